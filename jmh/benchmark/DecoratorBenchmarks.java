@@ -0,0 +1,92 @@
+package benchmark;
+
+import decorator.BaseDocumentProcessor;
+import decorator.CompressionDecorator;
+import decorator.DocumentProcessor;
+import decorator.EncryptionDecorator;
+import decorator.FusedPipeline;
+import decorator.WatermarkDecorator;
+import model.ContentSource;
+import model.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watermark, compression and encryption on their own and chained, with the
+ * chain run both layer by layer and fused into one streaming pass.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class DecoratorBenchmarks {
+
+    @Param({"Watermark", "Compression", "CompressionParallel", "Encryption", "EncryptionParallel",
+            "Chain", "ChainFused"})
+    public String chain;
+
+    @Param({"1024", "65536", "1048576", "16777216", "268435456", "1073741824"})
+    public long size;
+
+    private DocumentProcessor processor;
+    private ContentSource payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        Payloads.muteConsole();
+        processor = switch (chain) {
+            case "Watermark" -> new WatermarkDecorator(new BaseDocumentProcessor());
+            case "Compression" -> new CompressionDecorator(new BaseDocumentProcessor(), 6);
+            case "CompressionParallel" -> {
+                CompressionDecorator compression = new CompressionDecorator(new BaseDocumentProcessor(), 6);
+                compression.setParallel(true);
+                yield compression;
+            }
+            case "Encryption" -> new EncryptionDecorator(new BaseDocumentProcessor(), "BenchKey");
+            case "EncryptionParallel" -> {
+                EncryptionDecorator encryption = new EncryptionDecorator(new BaseDocumentProcessor(), "BenchKey");
+                encryption.setParallel(true);
+                yield encryption;
+            }
+            case "Chain" -> chain();
+            case "ChainFused" -> FusedPipeline.compile(chain());
+            default -> throw new IllegalArgumentException("Unknown chain " + chain);
+        };
+        payload = Payloads.create(size);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Payloads.delete(payload);
+        Payloads.restoreConsole();
+    }
+
+    @Benchmark
+    public long process() {
+        Document processed = processor.process(new Document(payload, "DOCX", "bench.docx"));
+        long produced = processed.getFileSize();
+        // drop pooled buffers and spill files right away so large runs don't fill the temp dir
+        processed.getContentSource().release();
+        return produced;
+    }
+
+    private static DocumentProcessor chain() {
+        return new EncryptionDecorator(
+                new CompressionDecorator(new WatermarkDecorator(new BaseDocumentProcessor()), 6), "BenchKey");
+    }
+}
@@ -0,0 +1,56 @@
+package benchmark;
+
+import observer.ConversionSubject;
+import observer.Observer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ConversionSubject#notifyObservers} with no, one and several observers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ObserverBenchmarks {
+
+    @Param({"0", "1", "8"})
+    public int observers;
+
+    private ConversionSubject subject;
+    private int progress;
+
+    @Setup
+    public void setUp() {
+        subject = new ConversionSubject();
+        for (int i = 0; i < observers; i++) {
+            // attach() ignores an instance it already has, so each observer must be distinct
+            subject.attach(new NoOpObserver());
+        }
+    }
+
+    @Benchmark
+    public void notifyObservers() {
+        progress = (progress + 1) % 100;
+        subject.notifyObservers("Benchmark progress", progress);
+    }
+
+    private static final class NoOpObserver implements Observer {
+        @Override
+        public void update(String message, int progress) {
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package benchmark;
+
+import model.ByteArrayContent;
+import model.ContentSource;
+import model.FileContent;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Benchmark inputs. Payloads above 64 MB are written to a temp file and read
+ * back through {@link FileContent}, the same way the facade loads large inputs.
+ */
+final class Payloads {
+
+    static final long MB = 1024 * 1024;
+    private static final long IN_MEMORY_LIMIT = 64 * MB;
+
+    private static PrintStream console;
+
+    private Payloads() {
+    }
+
+    static ContentSource create(long size) throws IOException {
+        if (size <= IN_MEMORY_LIMIT) {
+            byte[] data = new byte[(int) size];
+            fill(data, new Random(size));
+            return new ByteArrayContent(data);
+        }
+        Path file = Files.createTempFile("sdp-bench-", ".bin");
+        file.toFile().deleteOnExit();
+        byte[] block = new byte[(int) MB];
+        Random random = new Random(size);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            for (long written = 0; written < size; written += block.length) {
+                fill(block, random);
+                out.write(block, 0, (int) Math.min(block.length, size - written));
+            }
+        }
+        return new FileContent(file);
+    }
+
+    static void delete(ContentSource payload) throws IOException {
+        if (payload instanceof FileContent file) {
+            Files.deleteIfExists(file.getPath());
+        }
+    }
+
+    /**
+     * Strategies and decorators log every call; keep that out of the forked VM's output.
+     */
+    static synchronized void muteConsole() {
+        if (console == null) {
+            console = System.out;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        }
+    }
+
+    static synchronized void restoreConsole() {
+        if (console != null) {
+            System.setOut(console);
+            console = null;
+        }
+    }
+
+    // document-like data: words from a small vocabulary, so compression has real work to do
+    private static void fill(byte[] data, Random random) {
+        String[] words = {"conversion ", "document ", "pipeline ", "strategy ", "page ", "the ", "of ", "and ",
+                "watermark ", "encrypted ", "report ", "2024 ", "\n"};
+        int i = 0;
+        while (i < data.length) {
+            byte[] word = words[random.nextInt(words.length)].getBytes();
+            int count = Math.min(word.length, data.length - i);
+            System.arraycopy(word, 0, data, i, count);
+            i += count;
+        }
+    }
+}
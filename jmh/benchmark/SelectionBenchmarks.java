@@ -0,0 +1,57 @@
+package benchmark;
+
+import facade.ConversionFacade;
+import factory.StrategyRegistry;
+import model.Format;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import strategy.ConversionStrategy;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Strategy selection as the facade does it, by format name and by {@link Format}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SelectionBenchmarks {
+
+    private static final String[][] PAIRS = {{"PDF", "DOCX"}, {"DOCX", "TXT"}, {"png", "pdf"}, {"JPEG", "PDF"},
+            {"TXT", "DOCX"}};
+
+    private StrategyRegistry registry;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Payloads.muteConsole();
+        registry = new ConversionFacade().getStrategyRegistry();
+        Payloads.restoreConsole();
+    }
+
+    @Benchmark
+    public ConversionStrategy selectStrategy() {
+        next = (next + 1) % PAIRS.length;
+        String[] pair = PAIRS[next];
+        return registry.resolve(pair[0], pair[1]);
+    }
+
+    @Benchmark
+    public ConversionStrategy selectStrategyByEnum() {
+        next = (next + 1) % PAIRS.length;
+        String[] pair = PAIRS[next];
+        return registry.resolve(Format.of(pair[0]), Format.of(pair[1]));
+    }
+}
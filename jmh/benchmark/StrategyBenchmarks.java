@@ -0,0 +1,72 @@
+package benchmark;
+
+import adapter.ITextAdapter;
+import adapter.POIAdapter;
+import model.ContentSource;
+import model.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import strategy.ConversionStrategy;
+import strategy.DocxToTxtStrategy;
+import strategy.ImageToPdfStrategy;
+import strategy.PdfToDocxStrategy;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every {@link ConversionStrategy} across payload sizes from 1 KB to 1 GB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class StrategyBenchmarks {
+
+    @Param({"PdfToDocxStrategy", "DocxToTxtStrategy", "ImageToPdfStrategy", "ITextAdapter", "POIAdapter"})
+    public String strategy;
+
+    @Param({"1024", "65536", "1048576", "16777216", "268435456", "1073741824"})
+    public long size;
+
+    private ConversionStrategy converter;
+    private String format;
+    private ContentSource payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        Payloads.muteConsole();
+        switch (strategy) {
+            case "PdfToDocxStrategy" -> { converter = new PdfToDocxStrategy(); format = "PDF"; }
+            case "DocxToTxtStrategy" -> { converter = new DocxToTxtStrategy(); format = "DOCX"; }
+            case "ImageToPdfStrategy" -> { converter = new ImageToPdfStrategy(); format = "PNG"; }
+            case "ITextAdapter" -> { converter = new ITextAdapter(); format = "DOCX"; }
+            case "POIAdapter" -> { converter = new POIAdapter(); format = "PDF"; }
+            default -> throw new IllegalArgumentException("Unknown strategy " + strategy);
+        }
+        payload = Payloads.create(size);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Payloads.delete(payload);
+        Payloads.restoreConsole();
+    }
+
+    @Benchmark
+    public Document convert() throws Exception {
+        return converter.convert(new Document(payload, format, "bench." + format.toLowerCase()));
+    }
+}
@@ -1,4 +1,5 @@
 import facade.ConversionFacade;
+import metrics.MetricsRegistry;
 import model.ConversionResult;
 import observer.LogObserver;
 import observer.ProgressObserver;
@@ -17,9 +18,12 @@ public class Main {
         System.out.println("==============================================\n");
 
         ConversionFacade facade = new ConversionFacade();
+        MetricsRegistry.shared().enableJmx();
 
         ProgressObserver progressObserver = new ProgressObserver("Main");
         LogObserver logObserver = new LogObserver();
+        // echo events as they happen; the demo is not a hot path
+        logObserver.setConsoleOutput(true);
 
         facade.attachObserver(progressObserver);
         facade.attachObserver(logObserver);
@@ -31,6 +35,9 @@ public class Main {
         System.out.println("\n==============================================");
         logObserver.printLogs();
 
+        System.out.println("\n--- Stage Metrics ---");
+        System.out.print(MetricsRegistry.shared().getSnapshot());
+
         System.out.println("==============================================");
         System.out.println("Demo completed successfully!");
         System.out.println("All 6 design patterns demonstrated:");
@@ -133,6 +140,13 @@ public class Main {
                         (results.get(i).isSuccess() ? "SUCCESS" : "FAILED"));
             }
 
+            System.out.println("\nParallel batch converting " + files.size() + " files to PDF:");
+            List<ConversionResult> parallelResults = facade.batchConvertParallel(files, "PDF");
+            for (int i = 0; i < parallelResults.size(); i++) {
+                System.out.println((i + 1) + ". " + files.get(i) + ": " +
+                        (parallelResults.get(i).isSuccess() ? "SUCCESS" : "FAILED"));
+            }
+
         } catch (Exception e) {
             System.err.println("Error in batch conversion: " + e.getMessage());
             e.printStackTrace();
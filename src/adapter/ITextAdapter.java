@@ -59,7 +59,7 @@ public class ITextAdapter implements ConversionStrategy {
     private byte[] adaptITextConversion(Document input) {
         String content = "PDF created by " + libraryName + " adapter\n" +
                         "Original format: " + input.getFormat() + "\n" +
-                        "Original size: " + input.getContent().length + " bytes";
+                        "Original size: " + input.getFileSize() + " bytes";
         return content.getBytes();
     }
 }
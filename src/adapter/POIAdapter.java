@@ -56,7 +56,7 @@ public class POIAdapter implements ConversionStrategy {
     private byte[] adaptPOIConversion(Document input) {
         String content = "DOCX created by " + libraryName + " adapter\n" +
                         "Original format: " + input.getFormat() + "\n" +
-                        "Original size: " + input.getContent().length + " bytes";
+                        "Original size: " + input.getFileSize() + " bytes";
         return content.getBytes();
     }
 }
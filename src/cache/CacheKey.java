@@ -0,0 +1,73 @@
+package cache;
+
+import decorator.DocumentProcessor;
+import model.Document;
+import model.Format;
+import util.ContentHash;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Identity of a conversion result: content hash and length of the input, the
+ * input and target formats, and the processor chain that was applied.
+ */
+public final class CacheKey {
+
+    private final String id;
+
+    private CacheKey(String id) {
+        this.id = id;
+    }
+
+    /**
+     * @return the key, or null if the processor's results are not cacheable
+     */
+    public static CacheKey of(Document input, String outputFormat, DocumentProcessor processor) throws IOException {
+        if (processor != null && processor.describe() == null) {
+            return null;
+        }
+        long contentHash;
+        try (InputStream in = input.openContentStream()) {
+            contentHash = ContentHash.hash(in);
+        }
+        return of(contentHash, input.getFileSize(), input.getFormat(), outputFormat, processor);
+    }
+
+    public static CacheKey of(long contentHash, long contentLength, String inputFormat, String outputFormat,
+                              DocumentProcessor processor) {
+        String processorConfig = processor != null ? processor.describe() : "none";
+        if (processorConfig == null) {
+            return null;
+        }
+        long configHash = ContentHash.hash(processorConfig.getBytes(StandardCharsets.UTF_8));
+        // the id doubles as the disk tier file name, so keep it filesystem-safe
+        return new CacheKey(ContentHash.toHex(contentHash) + "-" + contentLength
+                + "-" + Format.of(inputFormat) + "-" + Format.of(outputFormat)
+                + "-" + ContentHash.toHex(configHash));
+    }
+
+    static CacheKey fromId(String id) {
+        return new CacheKey(id);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof CacheKey && id.equals(((CacheKey) o).id));
+    }
+
+    @Override
+    public int hashCode() {
+        return id.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return id;
+    }
+}
@@ -0,0 +1,389 @@
+package cache;
+
+import decorator.DocumentProcessor;
+import model.ByteArrayContent;
+import model.ContentBuffer;
+import model.ContentSource;
+import model.Document;
+import model.Metadata;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Two-tier cache of conversion results. Recently used results live in a
+ * size-bounded in-memory LRU; entries evicted from it (and results too large
+ * for it) are spilled to a size-bounded directory on disk.
+ */
+public class ConversionCache {
+
+    public static final long DEFAULT_MEMORY_BYTES = 64L * 1024 * 1024;
+    public static final long DEFAULT_DISK_BYTES = 1024L * 1024 * 1024;
+
+    // rough per-entry cost of the key, document shell and metadata map
+    private static final int ENTRY_OVERHEAD = 512;
+
+    private final long maxMemoryBytes;
+    private final long maxEntryBytes;
+    private final Path diskDirectory;
+    private final long maxDiskBytes;
+
+    private final LinkedHashMap<CacheKey, Entry> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private final LinkedHashMap<CacheKey, Long> diskIndex = new LinkedHashMap<>(64, 0.75f, true);
+    private long memoryBytes;
+    private long diskBytes;
+
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder diskEvictions = new LongAdder();
+
+    public ConversionCache() {
+        this(DEFAULT_MEMORY_BYTES);
+    }
+
+    public ConversionCache(long maxMemoryBytes) {
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxEntryBytes = maxMemoryBytes / 4;
+        this.diskDirectory = null;
+        this.maxDiskBytes = 0;
+    }
+
+    public ConversionCache(long maxMemoryBytes, Path diskDirectory, long maxDiskBytes) throws IOException {
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxEntryBytes = maxMemoryBytes / 4;
+        this.diskDirectory = diskDirectory;
+        this.maxDiskBytes = maxDiskBytes;
+        Files.createDirectories(diskDirectory);
+        loadDiskIndex();
+    }
+
+    public CacheKey keyFor(Document input, String outputFormat, DocumentProcessor processor)
+            throws IOException {
+        return CacheKey.of(input, outputFormat, processor);
+    }
+
+    /**
+     * Key for an input whose content hash the caller has already computed.
+     */
+    public CacheKey keyFor(long contentHash, Document input, String outputFormat, DocumentProcessor processor) {
+        return CacheKey.of(contentHash, input.getFileSize(), input.getFormat(), outputFormat, processor);
+    }
+
+    /**
+     * Returns a fresh copy of the cached result, or null on a miss.
+     */
+    public Document get(CacheKey key) {
+        Entry entry;
+        synchronized (this) {
+            entry = memory.get(key);
+        }
+        if (entry != null) {
+            memoryHits.increment();
+            return entry.toDocument();
+        }
+
+        Document fromDisk = readFromDisk(key);
+        if (fromDisk != null) {
+            diskHits.increment();
+            return fromDisk;
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(CacheKey key, Document result) {
+        try {
+            if (result.getFileSize() > maxEntryBytes) {
+                // too large for the memory tier, keep it on disk only
+                if (diskDirectory != null) {
+                    writeToDisk(key, result.getContentSource(), result);
+                }
+                return;
+            }
+            // toByteArray copies, so the caller can't change the cached bytes afterwards
+            Entry entry = new Entry(result.getContentSource().toByteArray(), result.getFormat(),
+                    result.getFileName(), Metadata.copyOf(result.getMetadata()));
+            putInMemory(key, entry);
+        } catch (IOException e) {
+            // a failed cache write must never fail the conversion itself
+            System.out.println("ConversionCache: Failed to cache result " + key + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Drops every entry from both tiers, deleting the disk tier's files.
+     */
+    public void clear() {
+        List<CacheKey> onDisk;
+        synchronized (this) {
+            memory.clear();
+            memoryBytes = 0;
+            onDisk = new ArrayList<>(diskIndex.keySet());
+            diskIndex.clear();
+            diskBytes = 0;
+        }
+        for (CacheKey key : onDisk) {
+            try {
+                Files.deleteIfExists(metaPath(key));
+                Files.deleteIfExists(contentPath(key));
+            } catch (IOException e) {
+                System.out.println("ConversionCache: Failed to delete cached result " + key + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public long getHitCount() {
+        return memoryHits.sum() + diskHits.sum();
+    }
+
+    public long getMemoryHitCount() {
+        return memoryHits.sum();
+    }
+
+    public long getDiskHitCount() {
+        return diskHits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getDiskEvictionCount() {
+        return diskEvictions.sum();
+    }
+
+    public synchronized long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    public synchronized long getDiskBytes() {
+        return diskBytes;
+    }
+
+    public synchronized int getMemoryEntryCount() {
+        return memory.size();
+    }
+
+    @Override
+    public String toString() {
+        return "ConversionCache{" +
+                "hits=" + getHitCount() +
+                " (memory=" + getMemoryHitCount() + ", disk=" + getDiskHitCount() + ")" +
+                ", misses=" + getMissCount() +
+                ", evictions=" + getEvictionCount() +
+                ", diskEvictions=" + getDiskEvictionCount() +
+                ", memoryBytes=" + getMemoryBytes() +
+                ", diskBytes=" + getDiskBytes() +
+                '}';
+    }
+
+    private void putInMemory(CacheKey key, Entry entry) throws IOException {
+        List<Map.Entry<CacheKey, Entry>> evicted = new ArrayList<>();
+        synchronized (this) {
+            Entry previous = memory.put(key, entry);
+            if (previous != null) {
+                memoryBytes -= previous.weight();
+            }
+            memoryBytes += entry.weight();
+
+            Iterator<Map.Entry<CacheKey, Entry>> eldest = memory.entrySet().iterator();
+            while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+                Map.Entry<CacheKey, Entry> victim = eldest.next();
+                eldest.remove();
+                memoryBytes -= victim.getValue().weight();
+                evicted.add(victim);
+                evictions.increment();
+            }
+        }
+
+        // spill outside the lock so lookups don't wait on disk I/O
+        if (diskDirectory != null) {
+            for (Map.Entry<CacheKey, Entry> victim : evicted) {
+                Entry value = victim.getValue();
+                writeToDisk(victim.getKey(), new ByteArrayContent(value.content),
+                        value.toDocument());
+            }
+        }
+    }
+
+    private void writeToDisk(CacheKey key, ContentSource content, Document result) throws IOException {
+        synchronized (this) {
+            if (diskIndex.containsKey(key)) {
+                return;
+            }
+        }
+        Path contentFile = contentPath(key);
+        Path metaFile = metaPath(key);
+
+        Path tempContent = Files.createTempFile(diskDirectory, key.getId(), ".tmp");
+        try (OutputStream out = Files.newOutputStream(tempContent)) {
+            content.transferTo(out);
+        }
+        Files.move(tempContent, contentFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        Properties meta = new Properties();
+        meta.setProperty("format", result.getFormat());
+        meta.setProperty("fileName", result.getFileName());
+        result.getMetadata().forEach((name, value) -> meta.setProperty("meta." + name, value));
+        Path tempMeta = Files.createTempFile(diskDirectory, key.getId(), ".tmp");
+        try (OutputStream out = Files.newOutputStream(tempMeta)) {
+            meta.store(out, null);
+        }
+        // the meta file is written last and marks the entry complete
+        Files.move(tempMeta, metaFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        long size = content.size();
+        List<CacheKey> victims = new ArrayList<>();
+        synchronized (this) {
+            Long previous = diskIndex.put(key, size);
+            diskBytes += size - (previous != null ? previous : 0);
+            Iterator<Map.Entry<CacheKey, Long>> eldest = diskIndex.entrySet().iterator();
+            while (diskBytes > maxDiskBytes && eldest.hasNext()) {
+                Map.Entry<CacheKey, Long> victim = eldest.next();
+                eldest.remove();
+                diskBytes -= victim.getValue();
+                victims.add(victim.getKey());
+                diskEvictions.increment();
+            }
+        }
+        for (CacheKey victim : victims) {
+            Files.deleteIfExists(metaPath(victim));
+            Files.deleteIfExists(contentPath(victim));
+        }
+    }
+
+    private Document readFromDisk(CacheKey key) {
+        if (diskDirectory == null) {
+            return null;
+        }
+        synchronized (this) {
+            if (diskIndex.get(key) == null) {
+                return null;
+            }
+        }
+        try {
+            Properties meta = new Properties();
+            try (InputStream in = Files.newInputStream(metaPath(key))) {
+                meta.load(in);
+            }
+
+            Path contentFile = contentPath(key);
+            long size = Files.size(contentFile);
+            ContentSource content;
+            byte[] bytes = null;
+            if (size <= maxEntryBytes) {
+                bytes = Files.readAllBytes(contentFile);
+                content = new ByteArrayContent(bytes);
+            } else {
+                // copy out of the cache directory so a later eviction can't pull the file away
+                try (InputStream in = Files.newInputStream(contentFile); ContentBuffer out = new ContentBuffer()) {
+                    in.transferTo(out);
+                    content = out.toContentSource();
+                }
+            }
+
+            Map<String, String> metadata = new HashMap<>();
+            for (String name : meta.stringPropertyNames()) {
+                if (name.startsWith("meta.")) {
+                    metadata.put(name.substring(5), meta.getProperty(name));
+                }
+            }
+            Document document = new Document(content, meta.getProperty("format"), meta.getProperty("fileName"));
+            document.setMetadata(metadata);
+
+            if (bytes != null) {
+                // promote back into the memory tier
+                putInMemory(key, new Entry(bytes, document.getFormat(),
+                        document.getFileName(), Metadata.copyOf(metadata)));
+            }
+            return document;
+        } catch (IOException e) {
+            // a damaged entry is treated as a miss and dropped
+            synchronized (this) {
+                Long size = diskIndex.remove(key);
+                if (size != null) {
+                    diskBytes -= size;
+                }
+            }
+            return null;
+        }
+    }
+
+    private void loadDiskIndex() throws IOException {
+        List<Path> metaFiles = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(diskDirectory, "*.meta")) {
+            entries.forEach(metaFiles::add);
+        }
+        // oldest first, so the access-ordered index evicts them first
+        metaFiles.sort((a, b) -> {
+            try {
+                return Files.getLastModifiedTime(a).compareTo(Files.getLastModifiedTime(b));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        for (Path metaFile : metaFiles) {
+            String name = metaFile.getFileName().toString();
+            CacheKey key = CacheKey.fromId(name.substring(0, name.length() - ".meta".length()));
+            Path contentFile = contentPath(key);
+            if (Files.exists(contentFile)) {
+                long size = Files.size(contentFile);
+                Long previous = diskIndex.put(key, size);
+                diskBytes += size - (previous != null ? previous : 0);
+            }
+        }
+    }
+
+    private Path contentPath(CacheKey key) {
+        return diskDirectory.resolve(key.getId() + ".bin");
+    }
+
+    private Path metaPath(CacheKey key) {
+        return diskDirectory.resolve(key.getId() + ".meta");
+    }
+
+    private static final class Entry {
+        private final byte[] content;
+        private final String format;
+        private final String fileName;
+        private final Metadata metadata;
+
+        Entry(byte[] content, String format, String fileName, Metadata metadata) {
+            this.content = content;
+            this.format = format;
+            this.fileName = fileName;
+            this.metadata = metadata;
+        }
+
+        long weight() {
+            return content.length + ENTRY_OVERHEAD;
+        }
+
+        Document toDocument() {
+            // hits share the array; ByteArrayContent only ever hands out copies of it
+            Document document = new Document(content, format, fileName);
+            document.setMetadata(metadata);
+            return document;
+        }
+    }
+}
@@ -0,0 +1,521 @@
+package decorator;
+
+import util.BufferPool;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * AES-256-GCM encryption of document streams. The key is stretched from the
+ * passphrase with PBKDF2 under a random salt, once per codec, and Cipher
+ * instances are reused per thread; the JDK's AES/GCM implementation is
+ * intrinsified on CPUs with AES-NI/CLMUL. Use {@link #forPassphrase} to share
+ * one codec, and so one key derivation, per passphrase.
+ *
+ * <p>Output layout: {@code magic "SDPE" | version | mode | chunkSize | salt(16) | nonce(12)}
+ * followed either by one GCM ciphertext+tag (STREAM) or by frames of
+ * {@code length(4) | ciphertext+tag} (CHUNKED). The header is authenticated
+ * with every message; chunk nonces are the base nonce XOR the chunk index, and
+ * each chunk also authenticates its index and a last-chunk flag so frames
+ * cannot be reordered or truncated.
+ */
+public class AesGcmCodec {
+
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+    public static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+    public static final int TAG_LENGTH = 16;
+    public static final int NONCE_LENGTH = 12;
+    public static final int SALT_LENGTH = 16;
+    public static final int HEADER_LENGTH = 4 + 1 + 1 + 4 + SALT_LENGTH + NONCE_LENGTH;
+    public static final int PBKDF2_ITERATIONS = 310_000;
+
+    private static final byte[] MAGIC = {'S', 'D', 'P', 'E'};
+    private static final byte VERSION = 2;
+    private static final int SALT_OFFSET = 10;
+    private static final int NONCE_OFFSET = SALT_OFFSET + SALT_LENGTH;
+    // fixed salt for the fingerprint key only; it never encrypts anything
+    private static final byte[] FINGERPRINT_SALT = "SDPE key fingerprint".getBytes(StandardCharsets.UTF_8);
+    private static final int MAX_CACHED_CODECS = 64;
+    private static final int MAX_CACHED_KEYS = 64;
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final ThreadLocal<Cipher> CIPHERS = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance("AES/GCM/NoPadding");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES/GCM is not available in this JVM", e);
+        }
+    });
+
+    private static final Map<String, AesGcmCodec> CODECS = new ConcurrentHashMap<>();
+
+    private final String passphrase;
+    private final byte[] salt;
+    private final SecretKey key;
+    private final String keyFingerprint;
+    // keys for salts seen while decrypting documents from other codecs
+    private final Map<String, SecretKey> keysBySalt = new ConcurrentHashMap<>();
+
+    public AesGcmCodec(String passphrase) {
+        this.passphrase = passphrase;
+        this.salt = new byte[SALT_LENGTH];
+        RANDOM.nextBytes(salt);
+        this.key = deriveKey(passphrase, salt);
+        this.keyFingerprint = fingerprint(passphrase);
+    }
+
+    /**
+     * Shared codec for the passphrase, so decorators created per request do
+     * not each pay for the key derivation.
+     */
+    public static AesGcmCodec forPassphrase(String passphrase) {
+        AesGcmCodec codec = CODECS.get(passphrase);
+        if (codec == null) {
+            if (CODECS.size() >= MAX_CACHED_CODECS) {
+                CODECS.clear();
+            }
+            codec = CODECS.computeIfAbsent(passphrase, AesGcmCodec::new);
+        }
+        return codec;
+    }
+
+    /**
+     * Short identifier of the key, safe to log or use in cache keys. It is an
+     * HMAC under a PBKDF2-stretched key, so checking a guessed passphrase
+     * against it costs as much as against the ciphertext.
+     */
+    public String getKeyFingerprint() {
+        return keyFingerprint;
+    }
+
+    private static String fingerprint(String passphrase) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(deriveKey(passphrase, FINGERPRINT_SALT).getEncoded(), "HmacSHA256"));
+            byte[] digest = mac.doFinal(MAGIC);
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available in this JVM", e);
+        }
+    }
+
+    public static SecretKey deriveKey(String passphrase, byte[] salt) {
+        try {
+            PBEKeySpec spec = new PBEKeySpec(passphrase.toCharArray(), salt, PBKDF2_ITERATIONS, 256);
+            try {
+                byte[] stretched = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+                return new SecretKeySpec(stretched, "AES");
+            } finally {
+                spec.clearPassword();
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2WithHmacSHA256 is not available in this JVM", e);
+        }
+    }
+
+    /**
+     * The key a document was encrypted with: this codec's own, or one derived
+     * from the salt in its header.
+     */
+    private SecretKey keyFor(byte[] header) {
+        if (Arrays.equals(header, SALT_OFFSET, NONCE_OFFSET, salt, 0, SALT_LENGTH)) {
+            return key;
+        }
+        String saltId = HexFormat.of().formatHex(header, SALT_OFFSET, NONCE_OFFSET);
+        SecretKey derived = keysBySalt.get(saltId);
+        if (derived == null) {
+            if (keysBySalt.size() >= MAX_CACHED_KEYS) {
+                keysBySalt.clear();
+            }
+            derived = deriveKey(passphrase, Arrays.copyOfRange(header, SALT_OFFSET, NONCE_OFFSET));
+            keysBySalt.put(saltId, derived);
+        }
+        return derived;
+    }
+
+    public void encrypt(InputStream in, OutputStream out, EncryptionMode mode, int chunkSize) throws IOException {
+        if (mode == EncryptionMode.CHUNKED && (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE)) {
+            throw new IllegalArgumentException("Chunk size must be between 1 and " + MAX_CHUNK_SIZE);
+        }
+        encryptingStage(out, mode, chunkSize).pump(in);
+    }
+
+    /**
+     * Returns a stage that encrypts everything written to it into {@code out};
+     * the header is written immediately and the final tag or chunk on finish.
+     */
+    public StreamStage encryptingStage(OutputStream out, EncryptionMode mode, int chunkSize) throws IOException {
+        return encryptingStage(out, mode, chunkSize, null);
+    }
+
+    /**
+     * As above; with a pool, CHUNKED mode seals a window of chunks in parallel.
+     * STREAM mode is one GCM operation and always runs on the calling thread.
+     */
+    public StreamStage encryptingStage(OutputStream out, EncryptionMode mode, int chunkSize, ForkJoinPool pool)
+            throws IOException {
+        if (mode == EncryptionMode.CHUNKED && (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE)) {
+            throw new IllegalArgumentException("Chunk size must be between 1 and " + MAX_CHUNK_SIZE);
+        }
+        byte[] header = newHeader(mode, chunkSize);
+        if (mode == EncryptionMode.STREAM) {
+            return new StreamEncryptingStage(out, header);
+        }
+        return pool != null
+                ? new ParallelChunkEncryptingStage(out, header, chunkSize, pool)
+                : new ChunkEncryptingStage(out, header, chunkSize);
+    }
+
+    public void decrypt(InputStream in, OutputStream out) throws IOException {
+        byte[] header = in.readNBytes(HEADER_LENGTH);
+        if (header.length != HEADER_LENGTH || !hasMagic(header) || header[4] != VERSION) {
+            throw new IOException("Not an AES-GCM encrypted document");
+        }
+        if (header[5] == EncryptionMode.CHUNKED.ordinal()) {
+            int chunkSize = chunkSize(header);
+            if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+                throw new IOException("Invalid chunk size in header: " + chunkSize);
+            }
+            decryptChunks(in, out, header, chunkSize);
+        } else {
+            decryptStream(in, out, header);
+        }
+    }
+
+    public byte[] decrypt(byte[] encrypted) throws IOException {
+        ByteArrayOutputStream plain = new ByteArrayOutputStream(Math.max(32, encrypted.length - HEADER_LENGTH));
+        decrypt(new ByteArrayInputStream(encrypted), plain);
+        return plain.toByteArray();
+    }
+
+    /**
+     * Encrypts one chunk into {@code output} and returns the number of bytes
+     * written (plain length + tag). Safe to call from several threads at once.
+     */
+    public int sealChunk(byte[] header, long index, boolean last,
+                         byte[] input, int offset, int length, byte[] output) throws IOException {
+        try {
+            Cipher cipher = initChunkCipher(Cipher.ENCRYPT_MODE, header, index, last);
+            return cipher.doFinal(input, offset, length, output, 0);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to encrypt chunk " + index, e);
+        }
+    }
+
+    public int openChunk(byte[] header, long index, boolean last,
+                         byte[] input, int offset, int length, byte[] output) throws IOException {
+        try {
+            Cipher cipher = initChunkCipher(Cipher.DECRYPT_MODE, header, index, last);
+            return cipher.doFinal(input, offset, length, output, 0);
+        } catch (AEADBadTagException e) {
+            throw new IOException("Chunk " + index + " failed authentication", e);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to decrypt chunk " + index, e);
+        }
+    }
+
+    public byte[] newHeader(EncryptionMode mode, int chunkSize) {
+        byte[] header = new byte[HEADER_LENGTH];
+        System.arraycopy(MAGIC, 0, header, 0, MAGIC.length);
+        header[4] = VERSION;
+        header[5] = (byte) mode.ordinal();
+        writeInt(header, 6, mode == EncryptionMode.CHUNKED ? chunkSize : 0);
+        System.arraycopy(salt, 0, header, SALT_OFFSET, SALT_LENGTH);
+        byte[] nonce = new byte[NONCE_LENGTH];
+        RANDOM.nextBytes(nonce);
+        System.arraycopy(nonce, 0, header, NONCE_OFFSET, NONCE_LENGTH);
+        return header;
+    }
+
+    private void decryptStream(InputStream in, OutputStream out, byte[] header) throws IOException {
+        try {
+            Cipher cipher = CIPHERS.get();
+            cipher.init(Cipher.DECRYPT_MODE, keyFor(header), new GCMParameterSpec(TAG_LENGTH * 8, header, NONCE_OFFSET, NONCE_LENGTH));
+            cipher.updateAAD(header);
+
+            // GCM releases no plaintext before the tag is verified, so STREAM mode
+            // holds the document inside the cipher; use CHUNKED for large content
+            byte[] input = BufferPool.shared().borrowHeap(IO_BUFFER_SIZE);
+            try {
+                int read;
+                while ((read = in.read(input, 0, IO_BUFFER_SIZE)) != -1) {
+                    byte[] part = cipher.update(input, 0, read);
+                    if (part != null) {
+                        out.write(part);
+                    }
+                }
+            } finally {
+                BufferPool.shared().release(input);
+            }
+            out.write(cipher.doFinal());
+        } catch (AEADBadTagException e) {
+            throw new IOException("Encrypted document failed authentication", e);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("AES-GCM decryption failed", e);
+        }
+    }
+
+    private void decryptChunks(InputStream in, OutputStream out, byte[] header, int chunkSize) throws IOException {
+        DataInputStream frames = new DataInputStream(in);
+        int length = readFrameLength(frames, chunkSize);
+        if (length < 0) {
+            throw new IOException("Encrypted document has no chunks");
+        }
+        BufferPool pool = BufferPool.shared();
+        byte[] sealed = pool.borrowHeap(chunkSize + TAG_LENGTH);
+        byte[] plain = pool.borrowHeap(chunkSize);
+        try {
+            for (long index = 0; ; index++) {
+                frames.readFully(sealed, 0, length);
+                int nextLength = readFrameLength(frames, chunkSize);
+                boolean last = nextLength < 0;
+
+                out.write(plain, 0, openChunk(header, index, last, sealed, 0, length, plain));
+
+                if (last) {
+                    return;
+                }
+                length = nextLength;
+            }
+        } finally {
+            pool.release(sealed);
+            pool.release(plain);
+        }
+    }
+
+    private Cipher initChunkCipher(int opmode, byte[] header, long index, boolean last)
+            throws GeneralSecurityException {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        System.arraycopy(header, NONCE_OFFSET, nonce, 0, NONCE_LENGTH);
+        for (int i = 0; i < 8; i++) {
+            nonce[NONCE_LENGTH - 1 - i] ^= (byte) (index >>> (8 * i));
+        }
+
+        byte[] chunkAad = new byte[9];
+        for (int i = 0; i < 8; i++) {
+            chunkAad[i] = (byte) (index >>> (56 - 8 * i));
+        }
+        chunkAad[8] = (byte) (last ? 1 : 0);
+
+        Cipher cipher = CIPHERS.get();
+        cipher.init(opmode, opmode == Cipher.ENCRYPT_MODE ? key : keyFor(header), new GCMParameterSpec(TAG_LENGTH * 8, nonce));
+        cipher.updateAAD(header);
+        cipher.updateAAD(chunkAad);
+        return cipher;
+    }
+
+    private static int readFrameLength(DataInputStream frames, int chunkSize) throws IOException {
+        int first = frames.read();
+        if (first == -1) {
+            return -1;
+        }
+        byte[] rest = frames.readNBytes(3);
+        if (rest.length != 3) {
+            throw new EOFException("Truncated chunk frame");
+        }
+        int length = (first << 24) | ((rest[0] & 0xFF) << 16) | ((rest[1] & 0xFF) << 8) | (rest[2] & 0xFF);
+        if (length < TAG_LENGTH || length > chunkSize + TAG_LENGTH) {
+            throw new IOException("Invalid chunk frame length: " + length);
+        }
+        return length;
+    }
+
+    public static int chunkSize(byte[] header) {
+        return ((header[6] & 0xFF) << 24) | ((header[7] & 0xFF) << 16) | ((header[8] & 0xFF) << 8) | (header[9] & 0xFF);
+    }
+
+    private static boolean hasMagic(byte[] header) {
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static void writeInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+
+    private class StreamEncryptingStage extends StreamStage {
+        private final Cipher cipher;
+        // GCM may hold back up to one block, plus the tag on doFinal
+        private byte[] output = BufferPool.shared().borrowHeap(IO_BUFFER_SIZE + 2 * TAG_LENGTH);
+
+        StreamEncryptingStage(OutputStream out, byte[] header) throws IOException {
+            super(out);
+            try {
+                // own instance: the stage keeps cipher state between writes, and other
+                // stages on this thread may use the thread-local cipher meanwhile
+                cipher = Cipher.getInstance("AES/GCM/NoPadding");
+                cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH * 8, header, NONCE_OFFSET, NONCE_LENGTH));
+                cipher.updateAAD(header);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("AES-GCM encryption failed", e);
+            }
+            emit(header);
+        }
+
+        @Override
+        protected void consume(byte[] b, int off, int len) throws IOException {
+            try {
+                int needed = cipher.getOutputSize(len);
+                if (needed > output.length) {
+                    BufferPool.shared().release(output);
+                    output = BufferPool.shared().borrowHeap(needed);
+                }
+                emit(output, 0, cipher.update(b, off, len, output, 0));
+            } catch (GeneralSecurityException e) {
+                throw new IOException("AES-GCM encryption failed", e);
+            }
+        }
+
+        @Override
+        protected void complete() throws IOException {
+            try {
+                emit(output, 0, cipher.doFinal(output, 0));
+            } catch (GeneralSecurityException e) {
+                throw new IOException("AES-GCM encryption failed", e);
+            } finally {
+                BufferPool.shared().release(output);
+                output = null;
+            }
+        }
+    }
+
+    private class ChunkEncryptingStage extends StreamStage {
+        private final byte[] header;
+        private final int chunkSize;
+        private final byte[] frameLength = new byte[4];
+        // grows up to the chunk size, so small documents do not pay for a full chunk;
+        // pooled arrays may be longer than asked for, so capacity is tracked separately
+        private byte[] chunk;
+        private int capacity;
+        private byte[] sealed;
+        private int filled;
+        private long index;
+
+        ChunkEncryptingStage(OutputStream out, byte[] header, int chunkSize) throws IOException {
+            super(out);
+            this.header = header;
+            this.chunkSize = chunkSize;
+            this.capacity = Math.min(chunkSize, IO_BUFFER_SIZE);
+            this.chunk = BufferPool.shared().borrowHeap(capacity);
+            emit(header);
+        }
+
+        @Override
+        protected void consume(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (filled == capacity) {
+                    if (capacity < chunkSize) {
+                        capacity = (int) Math.min(chunkSize, 2L * capacity);
+                        byte[] grown = BufferPool.shared().borrowHeap(capacity);
+                        System.arraycopy(chunk, 0, grown, 0, filled);
+                        BufferPool.shared().release(chunk);
+                        chunk = grown;
+                    } else {
+                        // more input follows, so this chunk is not the last one
+                        seal(false);
+                    }
+                }
+                int copied = Math.min(len, capacity - filled);
+                System.arraycopy(b, off, chunk, filled, copied);
+                filled += copied;
+                off += copied;
+                len -= copied;
+            }
+        }
+
+        @Override
+        protected void complete() throws IOException {
+            try {
+                seal(true);
+            } finally {
+                BufferPool.shared().release(chunk);
+                BufferPool.shared().release(sealed);
+                chunk = null;
+                sealed = null;
+            }
+        }
+
+        private void seal(boolean last) throws IOException {
+            if (sealed == null || sealed.length < filled + TAG_LENGTH) {
+                BufferPool.shared().release(sealed);
+                sealed = BufferPool.shared().borrowHeap(capacity + TAG_LENGTH);
+            }
+            int sealedLength = sealChunk(header, index++, last, chunk, 0, filled, sealed);
+            writeInt(frameLength, 0, sealedLength);
+            emit(frameLength);
+            emit(sealed, 0, sealedLength);
+            filled = 0;
+        }
+    }
+
+    private class ParallelChunkEncryptingStage extends StreamStage {
+        private final byte[] frameLength = new byte[4];
+        private final ParallelChunker chunker;
+
+        ParallelChunkEncryptingStage(OutputStream out, byte[] header, int chunkSize, ForkJoinPool pool)
+                throws IOException {
+            super(out);
+            emit(header);
+            this.chunker = new ParallelChunker(pool, chunkSize, pool.getParallelism(), 0) {
+                @Override
+                protected void process(Chunk chunk) throws IOException {
+                    if (chunk.output == null) {
+                        chunk.output = BufferPool.shared().borrowHeap(chunkSize + TAG_LENGTH);
+                    }
+                    chunk.outputLength = sealChunk(header, chunk.index, chunk.last,
+                            chunk.input, 0, chunk.length, chunk.output);
+                }
+
+                @Override
+                protected void emit(Chunk chunk) throws IOException {
+                    writeInt(frameLength, 0, chunk.outputLength);
+                    ParallelChunkEncryptingStage.this.emit(frameLength);
+                    ParallelChunkEncryptingStage.this.emit(chunk.output, 0, chunk.outputLength);
+                }
+            };
+        }
+
+        @Override
+        protected void consume(byte[] b, int off, int len) throws IOException {
+            chunker.write(b, off, len);
+        }
+
+        @Override
+        protected void complete() throws IOException {
+            chunker.finish();
+        }
+    }
+}
@@ -10,4 +10,10 @@ public class BaseDocumentProcessor implements DocumentProcessor {
         document.addMetadata("base_processing", "completed");
         return document;
     }
+
+    @Override
+    public String describe() {
+        // has no settings
+        return "BaseDocumentProcessor";
+    }
 }
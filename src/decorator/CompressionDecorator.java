@@ -1,13 +1,59 @@
 package decorator;
 
+import model.ContentSource;
 import model.Document;
+import util.BufferPool;
+import util.Checksums;
+import util.DeflaterPool;
+import util.EntropySampler;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 public class CompressionDecorator extends DocumentDecorator {
-    
+
+    private static final byte[] GZIP_HEADER = {0x1F, (byte) 0x8B, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xFF};
+    // pigz defaults: 128 KB blocks, each primed with the previous 32 KB
+    private static final int PARALLEL_BLOCK_SIZE = 128 * 1024;
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
     private int compressionLevel; // 1-9, higher = more compression
+    private CompressionFormat format;
+    private boolean skipIncompressible = true;
+    private ForkJoinPool forkJoinPool;
 
     public void setCompressionLevel(int compressionLevel) {
-        this.compressionLevel = compressionLevel;
+        this.compressionLevel = Math.min(9, Math.max(1, compressionLevel));
+    }
+
+    public void setFormat(CompressionFormat format) {
+        this.format = format;
+    }
+
+    public void setSkipIncompressible(boolean skipIncompressible) {
+        this.skipIncompressible = skipIncompressible;
+    }
+
+    /**
+     * Compresses independent deflate blocks on the common fork/join pool
+     * (pigz-style). The output is still one standard zlib or GZIP stream.
+     */
+    public void setParallel(boolean parallel) {
+        this.forkJoinPool = parallel ? ForkJoinPool.commonPool() : null;
+    }
+
+    public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+        this.forkJoinPool = forkJoinPool;
     }
 
     public CompressionDecorator(DocumentProcessor processor) {
@@ -15,39 +61,304 @@ public class CompressionDecorator extends DocumentDecorator {
     }
     
     public CompressionDecorator(DocumentProcessor processor, int compressionLevel) {
+        this(processor, compressionLevel, CompressionFormat.DEFLATE);
+    }
+
+    public CompressionDecorator(DocumentProcessor processor, int compressionLevel, CompressionFormat format) {
         super(processor);
         this.compressionLevel = Math.min(9, Math.max(1, compressionLevel));
+        this.format = format;
     }
     
+    @Override
+    protected String describeSettings() {
+        return "level=" + compressionLevel + ",format=" + format + ",skipIncompressible=" + skipIncompressible
+                + (forkJoinPool != null ? ",parallel" : "");
+    }
+
     @Override
     public Document process(Document document) {
         Document processed = super.process(document);
+        applyStage(processed);
+        return processed;
+    }
 
+    @Override
+    protected boolean supportsFusion() {
+        return true;
+    }
+
+    @Override
+    protected StreamStage openStage(OutputStream downstream) {
         System.out.println("CompressionDecorator: Compressing document with level " + compressionLevel);
-        
-        byte[] compressedContent = compress(processed.getContent());
-        processed.setContent(compressedContent);
-        
-        processed.addMetadata("compression", "enabled");
-        processed.addMetadata("compression_level", String.valueOf(compressionLevel));
-        processed.addMetadata("original_size", String.valueOf(document.getFileSize()));
-        processed.addMetadata("compressed_size", String.valueOf(compressedContent.length));
-        
-        double ratio = 100.0 * (1 - (double) compressedContent.length / document.getFileSize());
+        return new CompressionStage(downstream, compressionLevel, format, skipIncompressible, forkJoinPool);
+    }
+
+    @Override
+    protected void completeStage(Document document, StreamStage stage) {
+        String skipReason = ((CompressionStage) stage).skipReason;
+        long originalSize = stage.getBytesIn();
+        long compressedSize = stage.getBytesOut();
+
+        if (skipReason != null) {
+            System.out.println("CompressionDecorator: Skipped, content is " + skipReason);
+            document.addMetadata("compression", "skipped");
+            document.addMetadata("compression_skipped_reason", skipReason);
+        } else {
+            document.addMetadata("compression", "enabled");
+            document.addMetadata("compression_format", format.name());
+            if (((CompressionStage) stage).parallel != null) {
+                document.addMetadata("compression_parallel", "true");
+            }
+        }
+        document.addMetadata("compression_level", compressionLevel);
+        document.addMetadata("original_size", originalSize);
+        document.addMetadata("compressed_size", compressedSize);
+
+        double ratio = originalSize == 0 ? 0.0 : 100.0 * (1 - (double) compressedSize / originalSize);
         System.out.println("CompressionDecorator: Compression ratio: " + String.format("%.2f", ratio) + "%");
-        
-        return processed;
     }
 
-    private byte[] compress(byte[] content) {
-        // simulated compression - in real implementation use GZIPOutputStream
-        // for demonstration, we just reduce the size proportionally
-        int newSize = (int) (content.length * (1.0 - compressionLevel / 10.0));
-        newSize = Math.max(1, newSize); // Ensure at least 1 byte
-        
-        byte[] compressed = new byte[newSize];
-        System.arraycopy(content, 0, compressed, 0, Math.min(content.length, newSize));
-        
-        return compressed;
+    /**
+     * Streams the input through a pooled Deflater.
+     * @return the reason compression was skipped, or null if the output is compressed
+     */
+    String compress(InputStream in, OutputStream out) throws IOException {
+        CompressionStage stage = new CompressionStage(out, compressionLevel, format, skipIncompressible,
+                forkJoinPool);
+        stage.pump(in);
+        return stage.skipReason;
+    }
+
+    public void decompress(InputStream in, OutputStream out) throws IOException {
+        InputStream inflating = format == CompressionFormat.GZIP
+                ? new GZIPInputStream(in, ContentSource.TRANSFER_BUFFER_SIZE)
+                : new InflaterInputStream(in);
+        inflating.transferTo(out);
+    }
+
+    public byte[] decompress(byte[] compressedContent) {
+        ByteArrayOutputStream decompressed = new ByteArrayOutputStream(compressedContent.length * 2);
+        try {
+            decompress(new ByteArrayInputStream(compressedContent), decompressed);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return decompressed.toByteArray();
+    }
+
+    private static byte[] zlibHeader(int level) {
+        int cmf = 0x78; // deflate, 32 KB window
+        int flevel = level < 2 ? 0 : level < 6 ? 1 : level == 6 ? 2 : 3;
+        int flg = flevel << 6;
+        flg += 31 - ((cmf << 8) + flg) % 31;
+        return new byte[]{(byte) cmf, (byte) flg};
+    }
+
+    private static void writeIntLE(byte[] target, int offset, int value) {
+        target[offset] = (byte) value;
+        target[offset + 1] = (byte) (value >>> 8);
+        target[offset + 2] = (byte) (value >>> 16);
+        target[offset + 3] = (byte) (value >>> 24);
+    }
+
+    /**
+     * The first bytes are buffered and sampled first; content that is already
+     * compressed is copied through unchanged.
+     */
+    private static class CompressionStage extends StreamStage {
+        private final int level;
+        private final boolean gzip;
+        private final boolean skipIncompressible;
+        private final ForkJoinPool pool;
+
+        private byte[] sample = BufferPool.shared().borrowHeap(EntropySampler.SAMPLE_SIZE);
+        private int sampled;
+        private String skipReason;
+        private Deflater deflater;
+        private CRC32 crc;
+        private byte[] deflated;
+        private long total;
+        private ParallelDeflate parallel;
+
+        CompressionStage(OutputStream downstream, int level, CompressionFormat format, boolean skipIncompressible,
+                         ForkJoinPool pool) {
+            super(downstream);
+            this.level = level;
+            this.gzip = format == CompressionFormat.GZIP;
+            this.skipIncompressible = skipIncompressible;
+            this.pool = pool;
+        }
+
+        @Override
+        protected void consume(byte[] b, int off, int len) throws IOException {
+            if (sample != null) {
+                int copied = Math.min(len, EntropySampler.SAMPLE_SIZE - sampled);
+                System.arraycopy(b, off, sample, sampled, copied);
+                sampled += copied;
+                if (sampled < EntropySampler.SAMPLE_SIZE) {
+                    return;
+                }
+                decide();
+                off += copied;
+                len -= copied;
+            }
+            forward(b, off, len);
+        }
+
+        @Override
+        protected void complete() throws IOException {
+            if (sample != null) {
+                decide();
+            }
+            if (parallel != null) {
+                parallel.finish();
+                writeTrailer(parallel.checksum);
+                return;
+            }
+            if (deflater == null) {
+                return;
+            }
+            try {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    drain();
+                }
+                if (gzip) {
+                    writeTrailer(crc.getValue());
+                }
+            } finally {
+                DeflaterPool.shared().release(deflater, level, gzip);
+                deflater = null;
+                BufferPool.shared().release(deflated);
+                deflated = null;
+            }
+        }
+
+        private void decide() throws IOException {
+            byte[] head = sample;
+            sample = null;
+
+            skipReason = skipIncompressible ? EntropySampler.incompressibleReason(head, sampled) : null;
+            if (skipReason == null && pool != null) {
+                parallel = new ParallelDeflate(pool);
+                emit(gzip ? GZIP_HEADER : zlibHeader(level));
+            } else if (skipReason == null) {
+                deflater = DeflaterPool.shared().borrow(level, gzip);
+                deflated = BufferPool.shared().borrowHeap(ContentSource.TRANSFER_BUFFER_SIZE);
+                if (gzip) {
+                    crc = new CRC32();
+                    emit(GZIP_HEADER);
+                }
+            }
+            forward(head, 0, sampled);
+            BufferPool.shared().release(head);
+        }
+
+        private void forward(byte[] b, int off, int len) throws IOException {
+            if (parallel != null) {
+                total += len;
+                parallel.write(b, off, len);
+                return;
+            }
+            if (deflater == null) {
+                emit(b, off, len);
+                return;
+            }
+            if (crc != null) {
+                crc.update(b, off, len);
+            }
+            total += len;
+            deflater.setInput(b, off, len);
+            while (!deflater.needsInput()) {
+                drain();
+            }
+        }
+
+        private void drain() throws IOException {
+            emit(deflated, 0, deflater.deflate(deflated, 0, deflated.length, Deflater.NO_FLUSH));
+        }
+
+        private void writeTrailer(long checksum) throws IOException {
+            byte[] trailer;
+            if (gzip) {
+                trailer = new byte[8];
+                writeIntLE(trailer, 0, (int) checksum);
+                writeIntLE(trailer, 4, (int) total);
+            } else {
+                // zlib stores its Adler-32 big-endian
+                trailer = new byte[4];
+                AesGcmCodec.writeInt(trailer, 0, (int) checksum);
+            }
+            emit(trailer);
+        }
+
+        /**
+         * Raw deflate blocks ending in a sync flush concatenate into one valid
+         * deflate stream; the per-block checksums are combined in order.
+         */
+        private final class ParallelDeflate extends ParallelChunker {
+            private long checksum = gzip ? 0 : 1;
+
+            ParallelDeflate(ForkJoinPool pool) {
+                super(pool, PARALLEL_BLOCK_SIZE, 2 * pool.getParallelism(), DICTIONARY_SIZE);
+            }
+
+            @Override
+            protected void process(Chunk chunk) {
+                if (gzip) {
+                    CRC32 blockCrc = new CRC32();
+                    blockCrc.update(chunk.input, 0, chunk.length);
+                    chunk.checksum = blockCrc.getValue();
+                } else {
+                    Adler32 blockAdler = new Adler32();
+                    blockAdler.update(chunk.input, 0, chunk.length);
+                    chunk.checksum = blockAdler.getValue();
+                }
+
+                DeflaterPool pool = DeflaterPool.shared();
+                Deflater blockDeflater = pool.borrow(level, true);
+                try {
+                    if (chunk.dictionaryLength > 0) {
+                        blockDeflater.setDictionary(chunk.dictionary, chunk.dictionaryOffset, chunk.dictionaryLength);
+                    }
+                    blockDeflater.setInput(chunk.input, 0, chunk.length);
+                    if (chunk.last) {
+                        blockDeflater.finish();
+                    }
+                    if (chunk.output == null) {
+                        chunk.output = BufferPool.shared().borrowHeap(PARALLEL_BLOCK_SIZE + PARALLEL_BLOCK_SIZE / 8 + 64);
+                    }
+                    int written = 0;
+                    while (true) {
+                        if (written == chunk.output.length) {
+                            byte[] grown = BufferPool.shared().borrowHeap(chunk.output.length * 2);
+                            System.arraycopy(chunk.output, 0, grown, 0, written);
+                            BufferPool.shared().release(chunk.output);
+                            chunk.output = grown;
+                        }
+                        written += chunk.last
+                                ? blockDeflater.deflate(chunk.output, written, chunk.output.length - written)
+                                : blockDeflater.deflate(chunk.output, written, chunk.output.length - written,
+                                        Deflater.SYNC_FLUSH);
+                        // a sync flush is complete once the deflater leaves room in the buffer
+                        if (chunk.last ? blockDeflater.finished() : written < chunk.output.length) {
+                            break;
+                        }
+                    }
+                    chunk.outputLength = written;
+                } finally {
+                    pool.release(blockDeflater, level, true);
+                }
+            }
+
+            @Override
+            protected void emit(Chunk chunk) throws IOException {
+                CompressionStage.this.emit(chunk.output, 0, chunk.outputLength);
+                checksum = gzip
+                        ? Checksums.crc32Combine(checksum, chunk.checksum, chunk.length)
+                        : Checksums.adler32Combine(checksum, chunk.checksum, chunk.length);
+            }
+        }
     }
 }
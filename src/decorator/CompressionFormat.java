@@ -0,0 +1,6 @@
+package decorator;
+
+public enum CompressionFormat {
+    DEFLATE,
+    GZIP
+}
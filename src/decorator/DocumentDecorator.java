@@ -1,10 +1,20 @@
 package decorator;
 
+import metrics.MetricsRegistry;
+import metrics.StageMetrics;
+import model.ContentBuffer;
+import model.ContentSource;
 import model.Document;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
 public abstract class DocumentDecorator implements DocumentProcessor {
     
     protected DocumentProcessor wrappedProcessor;
+    private volatile StageMetrics stageMetrics;
     
     public DocumentDecorator(DocumentProcessor processor) {
         this.wrappedProcessor = processor;
@@ -14,4 +24,92 @@ public abstract class DocumentDecorator implements DocumentProcessor {
     public Document process(Document document) {
         return wrappedProcessor.process(document);
     }
+
+    @Override
+    public String describe() {
+        String settings = describeSettings();
+        String wrapped = wrappedProcessor.describe();
+        if (settings == null || wrapped == null) {
+            return null;
+        }
+        return getClass().getName() + "(" + settings + ") <- " + wrapped;
+    }
+
+    /**
+     * Every setting that affects the output, or null if this decorator's
+     * results must not be cached.
+     */
+    protected String describeSettings() {
+        return null;
+    }
+
+    /**
+     * True if this decorator's work is fully described by {@link #openStage}
+     * and {@link #completeStage}, so {@link FusedPipeline} may run it as one
+     * stage of a single streaming pass instead of calling {@link #process}.
+     */
+    protected boolean supportsFusion() {
+        return false;
+    }
+
+    /**
+     * Opens this decorator's content transform as a stage writing to {@code downstream}.
+     */
+    protected StreamStage openStage(OutputStream downstream) throws IOException {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " has no streaming stage");
+    }
+
+    /**
+     * Records this decorator's metadata once its stage has finished.
+     */
+    protected void completeStage(Document document, StreamStage stage) {
+    }
+
+    /**
+     * Runs this decorator's stage on its own over the document content.
+     */
+    protected void applyStage(Document document) {
+        StreamStage[] stage = new StreamStage[1];
+        try {
+            transformContent(document, (in, out) -> {
+                stage[0] = openStage(out);
+                stage[0].pump(in);
+            });
+        } catch (RuntimeException e) {
+            metrics().recordError();
+            throw e;
+        }
+        metrics().record(stage[0].getExclusiveNanos(), stage[0].getBytesIn(), stage[0].getBytesOut());
+        completeStage(document, stage[0]);
+    }
+
+    StageMetrics metrics() {
+        StageMetrics metrics = stageMetrics;
+        if (metrics == null) {
+            metrics = MetricsRegistry.shared().stage(MetricsRegistry.DECORATOR, getClass().getSimpleName());
+            stageMetrics = metrics;
+        }
+        return metrics;
+    }
+
+    /**
+     * Streams the document content through the transform into a spillable
+     * buffer and installs the result as the new content.
+     */
+    protected void transformContent(Document document, ContentTransform transform) {
+        ContentSource transformed;
+        try (InputStream in = document.openContentStream(); ContentBuffer out = new ContentBuffer()) {
+            transform.apply(in, out);
+            transformed = out.toContentSource();
+        } catch (IOException e) {
+            throw new UncheckedIOException(getClass().getSimpleName() + ": failed to process "
+                    + document.getFileName(), e);
+        }
+        document.setContentSource(transformed);
+    }
+
+    @FunctionalInterface
+    protected interface ContentTransform {
+        void apply(InputStream in, OutputStream out) throws IOException;
+    }
 }
@@ -4,4 +4,14 @@ import model.Document;
 
 public interface DocumentProcessor {
     Document process(Document document);
+
+    /**
+     * Stable description of this processor and its settings, used to key cached
+     * results. Two processors with equal descriptions must produce equivalent output.
+     * Returns null, the default, if the processor cannot describe its full
+     * configuration; its results are then never cached.
+     */
+    default String describe() {
+        return null;
+    }
 }
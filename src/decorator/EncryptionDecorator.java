@@ -2,12 +2,47 @@ package decorator;
 
 import model.Document;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ForkJoinPool;
+
 public class EncryptionDecorator extends DocumentDecorator {
     
     private String encryptionKey;
+    private AesGcmCodec codec;
+    private EncryptionMode mode = EncryptionMode.CHUNKED;
+    private int chunkSize = AesGcmCodec.DEFAULT_CHUNK_SIZE;
+    private ForkJoinPool forkJoinPool;
 
     public void setEncryptionKey(String encryptionKey) {
         this.encryptionKey = encryptionKey;
+        // derive the AES key once per passphrase, not per document or decorator
+        this.codec = AesGcmCodec.forPassphrase(encryptionKey);
+    }
+
+    public void setMode(EncryptionMode mode) {
+        this.mode = mode;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize <= 0 || chunkSize > AesGcmCodec.MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Chunk size must be between 1 and " + AesGcmCodec.MAX_CHUNK_SIZE);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Seals CHUNKED-mode chunks on the common fork/join pool. The output
+     * format is unchanged; STREAM mode ignores this setting.
+     */
+    public void setParallel(boolean parallel) {
+        this.forkJoinPool = parallel ? ForkJoinPool.commonPool() : null;
+    }
+
+    public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+        this.forkJoinPool = forkJoinPool;
     }
 
     public EncryptionDecorator(DocumentProcessor processor) {
@@ -17,35 +52,61 @@ public class EncryptionDecorator extends DocumentDecorator {
     public EncryptionDecorator(DocumentProcessor processor, String encryptionKey) {
         super(processor);
         this.encryptionKey = encryptionKey;
+        this.codec = AesGcmCodec.forPassphrase(encryptionKey);
+    }
+
+    public EncryptionDecorator(DocumentProcessor processor, String encryptionKey, EncryptionMode mode) {
+        this(processor, encryptionKey);
+        this.mode = mode;
     }
     
+    @Override
+    protected String describeSettings() {
+        // never put the key itself into cache keys or logs
+        return "key=" + codec.getKeyFingerprint() + ",mode=" + mode
+                + (mode == EncryptionMode.CHUNKED ? ",chunk=" + chunkSize : "");
+    }
+
     @Override
     public Document process(Document document) {
         Document processed = super.process(document);
+        applyStage(processed);
+        return processed;
+    }
+
+    @Override
+    protected boolean supportsFusion() {
+        return true;
+    }
 
+    @Override
+    protected StreamStage openStage(OutputStream downstream) throws IOException {
         System.out.println("EncryptionDecorator: Encrypting document");
-        
-        byte[] encryptedContent = encrypt(processed.getContent());
-        processed.setContent(encryptedContent);
-        
-        processed.addMetadata("encryption", "enabled");
-        processed.addMetadata("encryption_algorithm", "AES-256 (simulated)");
-        
-        return processed;
+        return codec.encryptingStage(downstream, mode, chunkSize, forkJoinPool);
     }
 
-    private byte[] encrypt(byte[] content) {
-        byte[] keyBytes = encryptionKey.getBytes();
-        byte[] encrypted = new byte[content.length];
-        
-        for (int i = 0; i < content.length; i++) {
-            encrypted[i] = (byte) (content[i] ^ keyBytes[i % keyBytes.length]);
+    @Override
+    protected void completeStage(Document document, StreamStage stage) {
+        document.addMetadata("encryption", "enabled");
+        document.addMetadata("encryption_algorithm", "AES-256-GCM");
+        document.addMetadata("encryption_mode", mode.name());
+        if (mode == EncryptionMode.CHUNKED) {
+            document.addMetadata("encryption_chunk_size", chunkSize);
+            if (forkJoinPool != null) {
+                document.addMetadata("encryption_parallel", "true");
+            }
         }
-        
-        return encrypted;
+    }
+
+    public void decrypt(InputStream in, OutputStream out) throws IOException {
+        codec.decrypt(in, out);
     }
 
     public byte[] decrypt(byte[] encryptedContent) {
-        return encrypt(encryptedContent);
+        try {
+            return codec.decrypt(encryptedContent);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 }
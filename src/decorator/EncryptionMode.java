@@ -0,0 +1,8 @@
+package decorator;
+
+public enum EncryptionMode {
+    // one GCM message over the whole document
+    STREAM,
+    // independently authenticated fixed-size chunks
+    CHUNKED
+}
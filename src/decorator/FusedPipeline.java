@@ -0,0 +1,104 @@
+package decorator;
+
+import model.ContentBuffer;
+import model.ContentSource;
+import model.Document;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs a decorator chain as one streaming pass. Nested decorators each copy
+ * the whole content into a new buffer; here the fusable outer layers are
+ * chained as {@link StreamStage}s, so the content is read once and written
+ * once into a single output buffer. Layers below the first decorator that
+ * cannot be fused run through their normal {@link DocumentProcessor#process}.
+ */
+public class FusedPipeline implements DocumentProcessor {
+
+    private final DocumentProcessor chain;
+    // outermost first, i.e. the order in which the data leaves the pipeline
+    private final List<DocumentDecorator> layers;
+    private final DocumentProcessor inner;
+
+    private FusedPipeline(DocumentProcessor chain, List<DocumentDecorator> layers, DocumentProcessor inner) {
+        this.chain = chain;
+        this.layers = layers;
+        this.inner = inner;
+    }
+
+    public static FusedPipeline compile(DocumentProcessor processor) {
+        if (processor instanceof FusedPipeline fused) {
+            return fused;
+        }
+        List<DocumentDecorator> layers = new ArrayList<>();
+        DocumentProcessor current = processor;
+        while (current instanceof DocumentDecorator decorator && decorator.supportsFusion()) {
+            layers.add(decorator);
+            current = decorator.wrappedProcessor;
+        }
+        return new FusedPipeline(processor, List.copyOf(layers), current);
+    }
+
+    public int getStageCount() {
+        return layers.size();
+    }
+
+    @Override
+    public Document process(Document document) {
+        Document processed = inner.process(document);
+        if (layers.isEmpty()) {
+            return processed;
+        }
+
+        System.out.println("FusedPipeline: Processing " + processed.getFileName() + " in one pass through "
+                + layers.size() + " stages");
+
+        int count = layers.size();
+        StreamStage[] stages = new StreamStage[count];
+        ContentSource result;
+        try (InputStream in = processed.openContentStream(); ContentBuffer out = new ContentBuffer()) {
+            OutputStream downstream = out;
+            for (int i = 0; i < count; i++) {
+                stages[i] = layers.get(i).openStage(downstream);
+                downstream = stages[i];
+            }
+
+            // the innermost stage receives the content; finishing inner to outer
+            // lets each trailer flow through the stages above it
+            stages[count - 1].pump(in);
+            for (int i = count - 2; i >= 0; i--) {
+                stages[i].finish();
+            }
+            result = out.toContentSource();
+        } catch (IOException | RuntimeException e) {
+            // the failing stage cannot be told apart in a fused pass, so every layer counts it
+            for (DocumentDecorator layer : layers) {
+                layer.metrics().recordError();
+            }
+            if (e instanceof IOException io) {
+                throw new UncheckedIOException("FusedPipeline: failed to process " + processed.getFileName(), io);
+            }
+            throw (RuntimeException) e;
+        }
+        processed.setContentSource(result);
+
+        // metadata in the same order as nested processing would add it
+        for (int i = count - 1; i >= 0; i--) {
+            StreamStage stage = stages[i];
+            layers.get(i).metrics().record(stage.getExclusiveNanos(), stage.getBytesIn(), stage.getBytesOut());
+            layers.get(i).completeStage(processed, stage);
+        }
+        return processed;
+    }
+
+    @Override
+    public String describe() {
+        // same output as the chain, so the same cache key
+        return chain.describe();
+    }
+}
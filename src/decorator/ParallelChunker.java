@@ -0,0 +1,171 @@
+package decorator;
+
+import util.BufferPool;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits a byte stream into fixed-size chunks and processes a window of
+ * chunks at a time on a fork/join pool, emitting the results in order.
+ * A chunk is only known to be the last one once the input is finished, so
+ * a full window is held back until more input arrives.
+ */
+abstract class ParallelChunker {
+
+    static final class Chunk {
+        long index;
+        boolean last;
+        final byte[] input;
+        int length;
+        // tail of the preceding input, for stages that prime a dictionary
+        byte[] dictionary;
+        int dictionaryOffset;
+        int dictionaryLength;
+        byte[] output;
+        int outputLength;
+        long checksum;
+
+        Chunk(int chunkSize) {
+            this.input = BufferPool.shared().borrowHeap(chunkSize);
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+    private final int dictionarySize;
+    private final Chunk[] window;
+    private final byte[] carry;
+    private int carryLength;
+    private int count;
+    private long nextIndex;
+
+    ParallelChunker(ForkJoinPool pool, int chunkSize, int windowSize, int dictionarySize) {
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+        this.dictionarySize = dictionarySize;
+        this.window = new Chunk[Math.max(1, windowSize)];
+        this.carry = dictionarySize > 0 ? BufferPool.shared().borrowHeap(dictionarySize) : null;
+    }
+
+    void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            Chunk current = count == 0 ? null : window[count - 1];
+            if (current == null || current.length == chunkSize) {
+                if (count == window.length) {
+                    // more input follows, so none of these is the last chunk
+                    flush(false);
+                }
+                current = startChunk();
+            }
+            int copied = Math.min(len, chunkSize - current.length);
+            System.arraycopy(b, off, current.input, current.length, copied);
+            current.length += copied;
+            off += copied;
+            len -= copied;
+        }
+    }
+
+    void finish() throws IOException {
+        if (count == 0) {
+            // empty input still produces one (empty) final chunk
+            startChunk();
+        }
+        flush(true);
+
+        BufferPool pool = BufferPool.shared();
+        for (Chunk chunk : window) {
+            if (chunk != null) {
+                pool.release(chunk.input);
+                pool.release(chunk.output);
+            }
+        }
+        pool.release(carry);
+    }
+
+    /**
+     * Transforms one chunk into {@code chunk.output}. Runs on pool threads.
+     */
+    protected abstract void process(Chunk chunk) throws IOException;
+
+    /**
+     * Writes one processed chunk. Called in chunk order on the writing thread.
+     */
+    protected abstract void emit(Chunk chunk) throws IOException;
+
+    private Chunk startChunk() {
+        Chunk chunk = window[count];
+        if (chunk == null) {
+            chunk = new Chunk(chunkSize);
+            window[count] = chunk;
+        }
+        chunk.index = nextIndex++;
+        chunk.length = 0;
+        chunk.last = false;
+        count++;
+        return chunk;
+    }
+
+    private void flush(boolean finished) throws IOException {
+        for (int i = 0; i < count; i++) {
+            Chunk chunk = window[i];
+            chunk.last = finished && i == count - 1;
+            if (i == 0) {
+                chunk.dictionary = carry;
+                chunk.dictionaryOffset = 0;
+                chunk.dictionaryLength = carryLength;
+            } else {
+                Chunk previous = window[i - 1];
+                chunk.dictionary = previous.input;
+                chunk.dictionaryLength = Math.min(dictionarySize, previous.length);
+                chunk.dictionaryOffset = previous.length - chunk.dictionaryLength;
+            }
+        }
+
+        if (count == 1) {
+            // nothing to split; skip the pool round trip
+            process(window[0]);
+        } else {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Chunk chunk = window[i];
+                tasks.add(new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        try {
+                            process(chunk);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                });
+            }
+            try {
+                pool.invoke(new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        invokeAll(tasks);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            emit(window[i]);
+        }
+
+        if (dictionarySize > 0) {
+            Chunk tail = window[count - 1];
+            carryLength = Math.min(dictionarySize, tail.length);
+            System.arraycopy(tail.input, tail.length - carryLength, carry, 0, carryLength);
+        }
+        count = 0;
+    }
+}
@@ -0,0 +1,121 @@
+package decorator;
+
+import model.ContentSource;
+import util.BufferPool;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Push-style content transform. Bytes written to the stage are transformed
+ * and passed on to the downstream stream; {@link #finish()} emits any
+ * trailer. Finishing (or closing) a stage never closes the downstream.
+ */
+public abstract class StreamStage extends OutputStream {
+
+    private final OutputStream downstream;
+    private final byte[] single = new byte[1];
+    private long bytesIn;
+    private long bytesOut;
+    private long elapsedNanos;
+    private long downstreamNanos;
+    private boolean finished;
+
+    protected StreamStage(OutputStream downstream) {
+        this.downstream = downstream;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        single[0] = (byte) b;
+        write(single, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (finished) {
+            throw new IOException(getClass().getSimpleName() + ": stage already finished");
+        }
+        bytesIn += len;
+        long start = System.nanoTime();
+        try {
+            consume(b, off, len);
+        } finally {
+            elapsedNanos += System.nanoTime() - start;
+        }
+    }
+
+    public void finish() throws IOException {
+        if (!finished) {
+            finished = true;
+            long start = System.nanoTime();
+            try {
+                complete();
+            } finally {
+                elapsedNanos += System.nanoTime() - start;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+    }
+
+    /**
+     * Writes the whole input through this stage and finishes it.
+     */
+    public void pump(InputStream in) throws IOException {
+        byte[] buffer = BufferPool.shared().borrowHeap(ContentSource.TRANSFER_BUFFER_SIZE);
+        try {
+            int read;
+            while ((read = in.read(buffer, 0, ContentSource.TRANSFER_BUFFER_SIZE)) != -1) {
+                write(buffer, 0, read);
+            }
+        } finally {
+            BufferPool.shared().release(buffer);
+        }
+        finish();
+    }
+
+    public long getBytesIn() {
+        return bytesIn;
+    }
+
+    public long getBytesOut() {
+        return bytesOut;
+    }
+
+    /**
+     * Time spent in this stage, including the stages downstream of it.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Time spent in this stage alone.
+     */
+    public long getExclusiveNanos() {
+        return elapsedNanos - downstreamNanos;
+    }
+
+    protected abstract void consume(byte[] b, int off, int len) throws IOException;
+
+    protected void complete() throws IOException {
+    }
+
+    protected void emit(byte[] b, int off, int len) throws IOException {
+        if (len > 0) {
+            long start = System.nanoTime();
+            downstream.write(b, off, len);
+            downstreamNanos += System.nanoTime() - start;
+            bytesOut += len;
+        }
+    }
+
+    protected void emit(byte[] b) throws IOException {
+        emit(b, 0, b.length);
+    }
+}
@@ -2,6 +2,9 @@ package decorator;
 
 import model.Document;
 
+import java.io.IOException;
+import java.io.OutputStream;
+
 public class WatermarkDecorator extends DocumentDecorator {
     
     private String watermarkText;
@@ -20,39 +23,61 @@ public class WatermarkDecorator extends DocumentDecorator {
     }
 
 
+    @Override
+    protected String describeSettings() {
+        return "text=" + watermarkText;
+    }
+
     @Override
     public Document process(Document document) {
         // First, process with wrapped processor
         Document processed = super.process(document);
         
         // Then add watermark
-        System.out.println("WatermarkDecorator: Adding watermark '" + watermarkText + "'");
-        
-        byte[] watermarkedContent = addWatermark(processed.getContent());
-        processed.setContent(watermarkedContent);
-        
-        processed.addMetadata("watermark", "enabled");
-        processed.addMetadata("watermark_text", watermarkText);
+        applyStage(processed);
         
         return processed;
     }
-    
+
+    @Override
+    protected boolean supportsFusion() {
+        return true;
+    }
+
+    @Override
+    protected StreamStage openStage(OutputStream downstream) {
+        System.out.println("WatermarkDecorator: Adding watermark '" + watermarkText + "'");
+        return new WatermarkStage(downstream, watermarkText);
+    }
+
+    @Override
+    protected void completeStage(Document document, StreamStage stage) {
+        document.addMetadata("watermark", "enabled");
+        document.addMetadata("watermark_text", watermarkText);
+    }
+
     /**
      * Simulates adding a watermark to document
      * In real implementation, this would modify the actual document content
-     * @param content Original content
-     * @return Content with watermark
      */
-    private byte[] addWatermark(byte[] content) {
-        // Simulated watermark addition
-        // In real implementation, use libraries like iText for PDF or Apache POI for DOCX
-        String watermarkData = "\n[WATERMARK: " + watermarkText + "]\n";
-        byte[] watermarkBytes = watermarkData.getBytes();
-        
-        byte[] result = new byte[content.length + watermarkBytes.length];
-        System.arraycopy(content, 0, result, 0, content.length);
-        System.arraycopy(watermarkBytes, 0, result, content.length, watermarkBytes.length);
-        
-        return result;
+    private static class WatermarkStage extends StreamStage {
+        private final String watermarkText;
+
+        WatermarkStage(OutputStream downstream, String watermarkText) {
+            super(downstream);
+            this.watermarkText = watermarkText;
+        }
+
+        @Override
+        protected void consume(byte[] b, int off, int len) throws IOException {
+            emit(b, off, len);
+        }
+
+        @Override
+        protected void complete() throws IOException {
+            // Simulated watermark addition
+            // In real implementation, use libraries like iText for PDF or Apache POI for DOCX
+            emit(("\n[WATERMARK: " + watermarkText + "]\n").getBytes());
+        }
     }
 }
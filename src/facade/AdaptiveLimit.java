@@ -0,0 +1,130 @@
+package facade;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gradient concurrency limit. Recent job latency is compared with a baseline,
+ * the lowest latency seen lately: while it stays close, the limit grows by
+ * about {@code sqrt(limit)} per sample as long as jobs are queueing; once it
+ * rises further above the baseline the limit shrinks in proportion. If the
+ * limit sits as low as the gradient can push it and latency stays high, the
+ * baseline is reset to the current latency, so a workload that got slower for
+ * good does not pin the limit there.
+ * Heap pressure after GC cuts the limit multiplicatively regardless of latency.
+ */
+final class AdaptiveLimit {
+
+    // latency may rise this much above the baseline before the limit shrinks
+    private static final double TOLERANCE = 1.5;
+    private static final double MIN_GRADIENT = 0.5;
+    private static final double SHORT_WEIGHT = 0.1;
+    private static final int STALE_BASELINE_SAMPLES = 100;
+    private static final double SMOOTHING = 0.2;
+    private static final double HEAP_PRESSURE_LIMIT = 0.85;
+    private static final double HEAP_BACKOFF = 0.75;
+    private static final long HEAP_CHECK_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final int floor;
+    private final int ceiling;
+    // where limit * MIN_GRADIENT + sqrt(limit) stops shrinking the limit
+    private final double lowest;
+    private final List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+
+    private double limit;
+    private double shortLatency;
+    private double baseline;
+    private int staleSamples;
+    private long lastHeapCheck;
+    private double heapPressure;
+
+    AdaptiveLimit(int floor, int ceiling, int initial) {
+        if (floor < 1 || ceiling < floor) {
+            throw new IllegalArgumentException("Need 1 <= floor <= ceiling, got " + floor + ".." + ceiling);
+        }
+        this.floor = floor;
+        this.ceiling = ceiling;
+        this.lowest = Math.max(floor, 1 / ((1 - MIN_GRADIENT) * (1 - MIN_GRADIENT)));
+        this.limit = Math.min(ceiling, Math.max(floor, initial));
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported()) {
+                heapPools.add(pool);
+            }
+        }
+    }
+
+    int getLimit() {
+        return (int) limit;
+    }
+
+    int getFloor() {
+        return floor;
+    }
+
+    int getCeiling() {
+        return ceiling;
+    }
+
+    /**
+     * Feeds one finished job into the limit.
+     * @param running jobs still running, not counting this one
+     * @param queued jobs waiting for a slot
+     * @return the new limit
+     */
+    synchronized int onSample(long latencyNanos, int running, int queued) {
+        shortLatency = shortLatency == 0 ? latencyNanos : shortLatency + (latencyNanos - shortLatency) * SHORT_WEIGHT;
+        if (baseline == 0 || shortLatency < baseline) {
+            baseline = shortLatency;
+        }
+        if (limit <= lowest + 1 && shortLatency > TOLERANCE * baseline) {
+            // cutting the limit as far as it goes hasn't brought latency back: the baseline is stale
+            if (++staleSamples >= STALE_BASELINE_SAMPLES) {
+                baseline = shortLatency;
+                staleSamples = 0;
+            }
+        } else {
+            staleSamples = 0;
+        }
+
+        if (heapPressure() > HEAP_PRESSURE_LIMIT) {
+            limit = Math.max(floor, limit * HEAP_BACKOFF);
+            return (int) limit;
+        }
+        if (queued == 0 && running + 1 < limit / 2) {
+            // the limit isn't what is holding jobs back, so latency says nothing about it
+            return (int) limit;
+        }
+
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, TOLERANCE * baseline / shortLatency));
+        double headroom = queued > 0 ? Math.sqrt(limit) : 0;
+        double target = limit * gradient + headroom;
+        limit = Math.min(ceiling, Math.max(floor, limit * (1 - SMOOTHING) + target * SMOOTHING));
+        return (int) limit;
+    }
+
+    /**
+     * Highest used/max ratio over the heap pools right after their last
+     * collection, so garbage waiting to be collected doesn't count.
+     */
+    private double heapPressure() {
+        long now = System.nanoTime();
+        if (now - lastHeapCheck < HEAP_CHECK_INTERVAL_NANOS) {
+            return heapPressure;
+        }
+        lastHeapCheck = now;
+        double highest = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (usage != null && usage.getMax() > 0) {
+                highest = Math.max(highest, (double) usage.getUsed() / usage.getMax());
+            }
+        }
+        heapPressure = highest;
+        return highest;
+    }
+}
@@ -0,0 +1,171 @@
+package facade;
+
+import decorator.DocumentProcessor;
+import model.ConversionResult;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the results of a batch in completion order. A conversion is only
+ * started against outstanding demand, so a subscriber that saves and releases
+ * each result before requesting the next holds at most {@code n} results for
+ * {@code request(n)}. Every subscription runs the batch from the start.
+ */
+final class BatchPublisher implements Flow.Publisher<ConversionResult> {
+
+    private final ConversionFacade facade;
+    private final List<String> inputPaths;
+    private final String outputFormat;
+    private final DocumentProcessor processor;
+    private final int maxConcurrency;
+
+    BatchPublisher(ConversionFacade facade, List<String> inputPaths, String outputFormat,
+                   DocumentProcessor processor, int maxConcurrency) {
+        this.facade = facade;
+        this.inputPaths = List.copyOf(inputPaths);
+        this.outputFormat = outputFormat;
+        this.processor = processor;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ConversionResult> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        BatchSubscription subscription = new BatchSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        subscription.drain();
+    }
+
+    private final class BatchSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super ConversionResult> subscriber;
+        private final Queue<ConversionResult> ready = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger buffered = new AtomicInteger();
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicLong requested = new AtomicLong();
+        private final Set<CompletableFuture<ConversionResult>> inFlight = ConcurrentHashMap.newKeySet();
+        // signals to the subscriber are only sent from drain(), one thread at a time
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable error;
+        private int next;
+        private boolean done;
+
+        BatchSubscription(Flow.Subscriber<? super ConversionResult> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("request(" + n + "): demand must be positive");
+            } else {
+                requested.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            drain();
+        }
+
+        void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                if (cancelled) {
+                    discard();
+                } else {
+                    if (error == null) {
+                        emitReady();
+                    }
+                    if (error != null) {
+                        // cancels the conversions still running and releases what is buffered
+                        cancelled = true;
+                        discard();
+                        subscriber.onError(error);
+                    } else {
+                        startConversions();
+                        if (!done && !cancelled && next == inputPaths.size() && running.get() == 0
+                                && ready.isEmpty()) {
+                            done = true;
+                            subscriber.onComplete();
+                        }
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void emitReady() {
+            long emitted = 0;
+            long demand = requested.get();
+            while (emitted != demand && !cancelled) {
+                ConversionResult result = ready.poll();
+                if (result == null) {
+                    break;
+                }
+                buffered.decrementAndGet();
+                emitted++;
+                try {
+                    subscriber.onNext(result);
+                } catch (RuntimeException e) {
+                    // a subscriber that throws has broken the contract; stop the batch
+                    error = e;
+                    break;
+                }
+            }
+            if (emitted > 0 && demand != Long.MAX_VALUE) {
+                requested.addAndGet(-emitted);
+            }
+        }
+
+        private void startConversions() {
+            // results waiting or being produced never exceed the outstanding demand
+            while (!cancelled && next < inputPaths.size() && running.get() < maxConcurrency
+                    && running.get() + buffered.get() < requested.get()) {
+                String inputPath = inputPaths.get(next++);
+                running.incrementAndGet();
+
+                ConversionJob job = new ConversionJob(inputPath, outputFormat);
+                job.setProcessor(processor);
+                CompletableFuture<ConversionResult> future = facade.submit(job);
+                inFlight.add(future);
+                future.whenComplete((result, failure) -> {
+                    inFlight.remove(future);
+                    // count it as buffered before it stops counting as running and before
+                    // emitReady can take it, so running + buffered never under-counts
+                    buffered.incrementAndGet();
+                    running.decrementAndGet();
+                    ready.offer(result != null ? result : ConversionFacade.failedResult(inputPath, failure));
+                    drain();
+                });
+            }
+        }
+
+        private void discard() {
+            for (CompletableFuture<ConversionResult> future : inFlight) {
+                future.cancel(false);
+            }
+            ConversionResult result;
+            while ((result = ready.poll()) != null) {
+                buffered.decrementAndGet();
+                if (result.getDocument() != null) {
+                    result.getDocument().release();
+                }
+            }
+        }
+    }
+}
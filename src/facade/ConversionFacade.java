@@ -1,31 +1,87 @@
 package facade;
 
+import cache.CacheKey;
+import cache.ConversionCache;
 import factory.ConverterFactory;
 import factory.DocumentConverterFactory;
 import factory.ImageConverterFactory;
+import factory.StrategyRegistry;
+import journal.JobJournal;
+import metrics.MetricsRegistry;
+import metrics.StageMetrics;
+import model.ContentBuffer;
+import model.ContentSource;
 import model.Document;
+import model.FileContent;
+import model.Format;
+import model.SharedContent;
 import model.ConversionResult;
 import observer.ConversionSubject;
 import observer.Observer;
+import planner.ConversionPlan;
+import planner.ConversionPlanner;
 import strategy.ConversionStrategy;
+import util.AtomicFileWriter;
+import util.BufferPool;
+import util.ContentHash;
 import util.ConversionException;
+import util.FormatSniffer;
+import util.WorkerPools;
 import decorator.DocumentProcessor;
+import decorator.FusedPipeline;
 import adapter.ITextAdapter;
 import adapter.POIAdapter;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
 public class ConversionFacade {
+
+    // outputs a resumable batch holds before saving them with one grouped fsync
+    private static final int JOURNAL_SAVE_GROUP = 16;
     
     private ConverterFactory documentFactory;
     private ConverterFactory imageFactory;
     private ConversionSubject subject;
     private List<ConversionStrategy> availableAdapters;
+    private volatile StrategyRegistry strategyRegistry;
+    private volatile ConversionPlanner planner;
+    private volatile ConversionCache resultCache;
+    private AtomicFileWriter outputWriter = new AtomicFileWriter();
+    private volatile boolean strictFormatDetection;
+    private volatile boolean batchDeduplication = true;
+    private volatile ExecutorService asyncExecutor;
+    private final Map<String, Integer> tenantWeights = new ConcurrentHashMap<>();
+    private volatile InFlightLimiter asyncLimiter =
+            new InFlightLimiter(4 * WorkerPools.defaultParallelism(), tenantWeights);
+    private final StageMetrics loadMetrics = MetricsRegistry.shared().stage(MetricsRegistry.IO, "load");
+    private final StageMetrics saveMetrics = MetricsRegistry.shared().stage(MetricsRegistry.IO, "save");
 
     public ConversionFacade() {
         this.documentFactory = new DocumentConverterFactory();
@@ -35,16 +91,19 @@ public class ConversionFacade {
 
         availableAdapters.add(new ITextAdapter());
         availableAdapters.add(new POIAdapter());
+        rebuildStrategyRegistry();
         
         System.out.println("ConversionFacade: Initialized with all subsystems");
     }
 
     public void setDocumentFactory(ConverterFactory documentFactory) {
         this.documentFactory = documentFactory;
+        rebuildStrategyRegistry();
     }
 
     public void setImageFactory(ConverterFactory imageFactory) {
         this.imageFactory = imageFactory;
+        rebuildStrategyRegistry();
     }
 
     public void setSubject(ConversionSubject subject) {
@@ -53,6 +112,97 @@ public class ConversionFacade {
 
     public void setAvailableAdapters(List<ConversionStrategy> availableAdapters) {
         this.availableAdapters = availableAdapters;
+        rebuildStrategyRegistry();
+    }
+
+    public void setResultCache(ConversionCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    public ConversionCache getResultCache() {
+        return resultCache;
+    }
+
+    public void setOutputWriter(AtomicFileWriter outputWriter) {
+        this.outputWriter = outputWriter;
+    }
+
+    /**
+     * Rejects inputs whose content has no signature for the format their
+     * extension claims. Off by default, so plain-text samples named
+     * {@code .pdf} or {@code .docx} still convert.
+     */
+    public void setStrictFormatDetection(boolean strictFormatDetection) {
+        this.strictFormatDetection = strictFormatDetection;
+    }
+
+    /**
+     * Converts inputs with identical content and target format once per
+     * batch and hands the result to every path that asked for it. On by
+     * default; each input is hashed once before conversion.
+     */
+    public void setBatchDeduplication(boolean batchDeduplication) {
+        this.batchDeduplication = batchDeduplication;
+    }
+
+    /**
+     * Executor for the async API. Defaults to virtual threads, so jobs that
+     * wait on I/O do not tie up platform threads.
+     */
+    public void setAsyncExecutor(ExecutorService asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    /**
+     * Maximum number of async jobs running at once; further jobs queue
+     * without blocking the caller.
+     */
+    public void setMaxAsyncInFlight(int maxInFlight) {
+        this.asyncLimiter = new InFlightLimiter(maxInFlight, tenantWeights);
+    }
+
+    /**
+     * Lets the async in-flight limit float between {@code floor} and
+     * {@code ceiling}, driven by job latency, queue depth and heap usage
+     * after GC. {@link #getAsyncLimit()} shows where it currently is.
+     */
+    public void setAdaptiveConcurrency(int floor, int ceiling) {
+        int initial = Math.min(ceiling, Math.max(floor, WorkerPools.defaultParallelism()));
+        this.asyncLimiter = new InFlightLimiter(new AdaptiveLimit(floor, ceiling, initial), tenantWeights);
+    }
+
+    /**
+     * Share of the async slots a tenant gets while jobs of its class are
+     * queueing, relative to the others; tenants without a weight have 1.
+     * Queue wait per class is recorded under the {@code queue} metrics category.
+     */
+    public void setTenantWeight(String tenant, int weight) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("Tenant weight must be at least 1, got " + weight);
+        }
+        tenantWeights.put(tenant, weight);
+    }
+
+    public int getAsyncInFlight() {
+        return asyncLimiter.getRunning();
+    }
+
+    public int getAsyncLimit() {
+        return asyncLimiter.getLimit();
+    }
+
+    public StrategyRegistry getStrategyRegistry() {
+        return strategyRegistry;
+    }
+
+    public ConversionPlanner getPlanner() {
+        return planner;
+    }
+
+    private void rebuildStrategyRegistry() {
+        StrategyRegistry registry = new StrategyRegistry(List.of(documentFactory, imageFactory), availableAdapters);
+        this.strategyRegistry = registry;
+        this.planner = new ConversionPlanner(registry);
     }
 
     public void attachObserver(Observer observer) {
@@ -64,134 +214,948 @@ public class ConversionFacade {
     }
 
     public ConversionResult convertDocument(String inputPath, String outputFormat) {
+        return convertDocument(inputPath, outputFormat, null);
+    }
+
+    private ConversionResult convertDocument(String inputPath, String outputFormat, LoadedInput loaded) {
         long startTime = System.currentTimeMillis();
         
         try {
-            subject.notifyObservers("Loading document: " + inputPath, 0);
+            subject.notifyObservers(inputPath, "Loading document: " + inputPath, 0);
             
             // load document from file
-            Document input = loadDocumentFromFile(inputPath);
-            subject.notifyObservers("Document loaded successfully", 20);
+            Document input = loadInput(inputPath, outputFormat, loaded);
+            subject.notifyObservers(inputPath, "Document loaded successfully", 20);
+
+            CacheKey cacheKey = fileCacheKey(input, outputFormat, loaded);
+            Document cached = fromCache(cacheKey, input, outputFormat);
+            if (cached != null) {
+                subject.notifyObservers(inputPath, "Result served from cache", 100);
+                return new ConversionResult(cached, true, "Conversion successful (cached)",
+                        System.currentTimeMillis() - startTime);
+            }
             
             // perform conversion
             Document output = convertDocument(input, outputFormat);
-            subject.notifyObservers("Conversion completed", 100);
+            storeInCache(cacheKey, output);
+            subject.notifyObservers(inputPath, "Conversion completed", 100);
             
             long endTime = System.currentTimeMillis();
             return new ConversionResult(output, true, "Conversion successful", endTime - startTime);
             
         } catch (Exception e) {
-            subject.notifyObservers("Conversion failed: " + e.getMessage(), 0);
+            subject.notifyObservers(inputPath, "Conversion failed: " + e.getMessage(), 0);
             return new ConversionResult(null, false, "Conversion failed: " + e.getMessage());
         }
     }
 
     public Document convertDocument(Document input, String outputFormat) throws ConversionException {
-        subject.notifyObservers("Starting conversion: " + input.getFormat() + " -> " + outputFormat, 30);
+        subject.notifyObservers(input, "Starting conversion: " + input.getFormat() + " -> " + outputFormat, 30);
         
-        // select5 appropriate conversion strategy
-        ConversionStrategy strategy = selectStrategy(input.getFormat(), outputFormat);
-        subject.notifyObservers("Selected strategy: " + strategy.getStrategyName(), 50);
+        // select a direct strategy, or the cheapest chain of strategies
+        ConversionPlan plan = selectPlan(input.getFormat(), outputFormat);
+        if (plan.getHopCount() == 1) {
+            subject.notifyObservers(input, "Selected strategy: " + plan.describeStrategies(), 50);
+        } else {
+            subject.notifyObservers(input, "Selected multi-hop plan: " + plan, 50);
+        }
         
         // perform conversion
-        Document result = strategy.convert(input);
-        subject.notifyObservers("Conversion completed successfully", 100);
+        Document result = plan.execute(input);
+        subject.notifyObservers(input, "Conversion completed successfully", 100);
         
         return result;
     }
 
+    /**
+     * Converts an already loaded document and runs it through the processor,
+     * if any. Unlike the path-based variant this skips the result cache, so
+     * the input is never hashed.
+     */
+    public Document convertAndProcess(Document input, String outputFormat, DocumentProcessor processor)
+            throws ConversionException {
+        Document converted = convertDocument(input, outputFormat);
+        return processor != null ? FusedPipeline.compile(processor).process(converted) : converted;
+    }
+
     public ConversionResult convertAndProcess(String inputPath, String outputFormat, 
                                               DocumentProcessor processor) {
         long startTime = System.currentTimeMillis();
         
         try {
-            subject.notifyObservers("Loading and converting document", 0);
+            subject.notifyObservers(inputPath, "Loading and converting document", 0);
             
-            Document input = loadDocumentFromFile(inputPath);
-            subject.notifyObservers("Document loaded", 20);
+            Document input = loadDocumentFromFile(inputPath, outputFormat);
+            subject.notifyObservers(inputPath, "Document loaded", 20);
+
+            CacheKey cacheKey = cacheKeyFor(input, outputFormat, processor);
+            Document cached = fromCache(cacheKey, input, outputFormat);
+            if (cached != null) {
+                subject.notifyObservers(inputPath, "Result served from cache", 100);
+                return new ConversionResult(cached, true, "Conversion and processing successful (cached)",
+                        System.currentTimeMillis() - startTime);
+            }
             
             Document converted = convertDocument(input, outputFormat);
-            subject.notifyObservers("Document converted", 60);
+            subject.notifyObservers(inputPath, "Document converted", 60);
             
             // apply decorators
-            Document processed = processor.process(converted);
-            subject.notifyObservers("Processing completed", 100);
+            Document processed = FusedPipeline.compile(processor).process(converted);
+            storeInCache(cacheKey, processed);
+            subject.notifyObservers(inputPath, "Processing completed", 100);
             
             long endTime = System.currentTimeMillis();
             return new ConversionResult(processed, true, 
                 "Conversion and processing successful", endTime - startTime);
             
         } catch (Exception e) {
-            subject.notifyObservers("Operation failed: " + e.getMessage(), 0);
+            subject.notifyObservers(inputPath, "Operation failed: " + e.getMessage(), 0);
             return new ConversionResult(null, false, "Operation failed: " + e.getMessage());
         }
     }
 
     public List<ConversionResult> batchConvert(List<String> inputPaths, String outputFormat) {
         List<ConversionResult> results = new ArrayList<>();
+        Map<String, BatchOriginal> seen = new HashMap<>();
+        AtomicInteger duplicates = new AtomicInteger();
         
-        subject.notifyObservers("Starting batch conversion of " + inputPaths.size() + " files", 0);
+        subject.notifyObservers(inputPaths, "Starting batch conversion of " + inputPaths.size() + " files", 0);
         
         for (int i = 0; i < inputPaths.size(); i++) {
             int progress = (int) ((i + 1) * 100.0 / inputPaths.size());
-            subject.notifyObservers("Converting file " + (i + 1) + " of " + inputPaths.size(), progress);
+            subject.notifyObservers(inputPaths, "Converting file " + (i + 1) + " of " + inputPaths.size(), progress);
             
-            ConversionResult result = convertDocument(inputPaths.get(i), outputFormat);
+            // sequential: the original a duplicate waits for has always finished already
+            ConversionResult result = convertOnce(inputPaths.get(i), outputFormat, seen, duplicates,
+                    this::convertDocument).join();
             results.add(result);
         }
         
-        subject.notifyObservers("Batch conversion completed", 100);
+        subject.notifyObservers(inputPaths,
+                "Batch conversion completed" + dedupSummary(inputPaths.size(), duplicates), 100);
         return results;
     }
 
+    /**
+     * Converts the batch and saves every output into {@code outputDirectory},
+     * recording each step in the journal. Inputs the journal already lists as
+     * saved, with the output still on disk, are skipped, so rerunning the same
+     * batch after a crash only converts the unfinished files. Outputs are
+     * saved in small groups that share one round of fsyncs, and released once
+     * saved, so the results carry metadata but no content.
+     */
+    public List<ConversionResult> batchConvertResumable(List<String> inputPaths, String outputFormat,
+                                                        String outputDirectory, JobJournal journal) {
+        Set<String> pending = new HashSet<>();
+        // output paths already taken, so inputs with the same file name don't overwrite each other
+        Set<Path> claimed = new HashSet<>();
+        for (String inputPath : inputPaths) {
+            if (isSaved(journal, inputPath)) {
+                claimed.add(Paths.get(journal.getDetail(inputPath)).normalize());
+            } else {
+                pending.add(inputPath);
+                journal.queued(inputPath);
+            }
+        }
+        subject.notifyObservers(inputPaths, "Starting resumable batch: " + pending.size() + " of "
+                + inputPaths.size() + " files left to convert", 0);
+
+        List<ConversionResult> results = new ArrayList<>(inputPaths.size());
+        // indexes into results of converted outputs that are not saved yet
+        List<Integer> unsaved = new ArrayList<>(JOURNAL_SAVE_GROUP);
+        int done = 0;
+        for (String inputPath : inputPaths) {
+            ConversionResult result;
+            if (!pending.contains(inputPath)) {
+                result = new ConversionResult(null, true, "Already converted: " + journal.getDetail(inputPath));
+            } else {
+                result = convertFile(inputPath, outputFormat, null);
+                if (result.isSuccess()) {
+                    journal.converted(inputPath);
+                    unsaved.add(results.size());
+                } else {
+                    journal.failed(inputPath, result.getMessage());
+                }
+                done++;
+                subject.notifyObservers(inputPaths, "Converted file " + done + " of " + pending.size(),
+                        (int) (done * 100.0 / pending.size()));
+            }
+            result.setInputPath(inputPath);
+            results.add(result);
+            if (unsaved.size() == JOURNAL_SAVE_GROUP) {
+                saveForJournal(results, unsaved, outputDirectory, claimed, journal);
+            }
+        }
+        saveForJournal(results, unsaved, outputDirectory, claimed, journal);
+
+        try {
+            journal.flush();
+        } catch (IOException e) {
+            subject.notifyObservers("Journal flush failed: " + e.getMessage());
+        }
+        subject.notifyObservers(inputPaths, "Resumable batch completed", 100);
+        return results;
+    }
+
+    private static boolean isSaved(JobJournal journal, String inputPath) {
+        if (journal.getState(inputPath) != JobJournal.State.SAVED) {
+            return false;
+        }
+        String outputPath = journal.getDetail(inputPath);
+        return outputPath != null && Files.exists(Paths.get(outputPath));
+    }
+
+    /**
+     * Saves the outputs of the given results together and clears the list.
+     * An output is only journaled as saved once the whole group is durable.
+     */
+    private void saveForJournal(List<ConversionResult> results, List<Integer> unsaved, String outputDirectory,
+                                Set<Path> claimed, JobJournal journal) {
+        if (unsaved.isEmpty()) {
+            return;
+        }
+        List<Document> outputs = new ArrayList<>(unsaved.size());
+        List<String> outputPaths = new ArrayList<>(unsaved.size());
+        for (int index : unsaved) {
+            Document output = results.get(index).getDocument();
+            outputs.add(output);
+            outputPaths.add(claimOutputPath(outputDirectory, output.getFileName(), claimed::add).toString());
+        }
+        try {
+            saveDocuments(outputs, outputPaths);
+            for (int i = 0; i < unsaved.size(); i++) {
+                journal.saved(results.get(unsaved.get(i)).getInputPath(), outputPaths.get(i));
+            }
+        } catch (IOException e) {
+            for (int index : unsaved) {
+                String inputPath = results.get(index).getInputPath();
+                journal.failed(inputPath, "Save failed: " + e.getMessage());
+                ConversionResult failure = new ConversionResult(null, false, "Save failed: " + e.getMessage());
+                failure.setInputPath(inputPath);
+                results.set(index, failure);
+            }
+        } finally {
+            // keep batch memory flat: the content is on disk now, or never will be
+            outputs.forEach(Document::release);
+            unsaved.clear();
+        }
+    }
+
+    /**
+     * The first input to claim a name gets it as is; later ones get
+     * {@code name-2.ext}, {@code name-3.ext} and so on. {@code claim} takes a
+     * candidate and returns true if it was free and is now taken, e.g.
+     * {@code Set::add}.
+     */
+    public static Path claimOutputPath(String outputDirectory, String fileName, Predicate<Path> claim) {
+        int dotIndex = fileName.lastIndexOf('.');
+        String base = dotIndex > 0 ? fileName.substring(0, dotIndex) : fileName;
+        String extension = dotIndex > 0 ? fileName.substring(dotIndex) : "";
+        Path candidate = Paths.get(outputDirectory, fileName).normalize();
+        for (int suffix = 2; !claim.test(candidate); suffix++) {
+            candidate = Paths.get(outputDirectory, base + "-" + suffix + extension).normalize();
+        }
+        return candidate;
+    }
+
+    public List<ConversionResult> batchConvertParallel(List<String> inputPaths, String outputFormat) {
+        return batchConvertParallel(inputPaths, outputFormat, WorkerPools.defaultParallelism(), false);
+    }
+
+    public List<ConversionResult> batchConvertParallel(List<String> inputPaths, String outputFormat,
+                                                       int parallelism, boolean virtualThreads) {
+        int workers = Math.max(1, parallelism);
+        ExecutorService executor = WorkerPools.newPool(workers, virtualThreads, "batch-worker");
+        try {
+            return batchConvertParallel(inputPaths, outputFormat, executor, workers);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public List<ConversionResult> batchConvertParallel(List<String> inputPaths, String outputFormat,
+                                                       ExecutorService executor, int maxInFlight) {
+        int total = inputPaths.size();
+        subject.notifyObservers(inputPaths, "Starting parallel batch conversion of " + total + " files", 0);
+
+        // bounds concurrent loads even when the executor is unbounded (virtual threads)
+        Semaphore permits = new Semaphore(Math.max(1, maxInFlight));
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger lastReported = new AtomicInteger();
+        Map<String, BatchOriginal> seen = new ConcurrentHashMap<>();
+        AtomicInteger duplicates = new AtomicInteger();
+
+        List<CompletableFuture<ConversionResult>> futures = new ArrayList<>(total);
+        List<Future<?>> tasks = new ArrayList<>(total);
+        for (String inputPath : inputPaths) {
+            CompletableFuture<ConversionResult> future = new CompletableFuture<>();
+            futures.add(future);
+            tasks.add(executor.submit(() -> {
+                CompletableFuture<ConversionResult> converted;
+                try {
+                    permits.acquire();
+                    try {
+                        converted = convertOnce(inputPath, outputFormat, seen, duplicates, this::convertFile);
+                    } finally {
+                        permits.release();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    converted = CompletableFuture.failedFuture(e);
+                } catch (RuntimeException e) {
+                    converted = CompletableFuture.failedFuture(e);
+                }
+                // a duplicate finishes with its original, holding neither a permit nor a worker meanwhile
+                converted.whenComplete((result, error) -> {
+                    reportBatchProgress(inputPaths, completed.incrementAndGet(), total, lastReported);
+                    if (error != null) {
+                        future.completeExceptionally(error);
+                    } else {
+                        future.complete(result);
+                    }
+                });
+            }));
+        }
+
+        // collect in submission order so results line up with inputPaths
+        List<ConversionResult> results = new ArrayList<>(total);
+        for (int i = 0; i < total; i++) {
+            results.add(awaitResult(futures.get(i), inputPaths.get(i)));
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            tasks.forEach(task -> task.cancel(true));
+        }
+
+        subject.notifyObservers(inputPaths,
+                "Parallel batch conversion completed" + dedupSummary(total, duplicates), 100);
+        return results;
+    }
+
+    public CompletableFuture<ConversionResult> convertDocumentAsync(String inputPath, String outputFormat) {
+        return convertDocumentAsync(inputPath, outputFormat, null);
+    }
+
+    public CompletableFuture<ConversionResult> convertDocumentAsync(String inputPath, String outputFormat,
+                                                                    Duration timeout) {
+        ConversionJob job = new ConversionJob(inputPath, outputFormat);
+        job.setTimeout(timeout);
+        return submit(job);
+    }
+
+    public CompletableFuture<ConversionResult> convertAndProcessAsync(String inputPath, String outputFormat,
+                                                                      DocumentProcessor processor) {
+        return convertAndProcessAsync(inputPath, outputFormat, processor, null);
+    }
+
+    public CompletableFuture<ConversionResult> convertAndProcessAsync(String inputPath, String outputFormat,
+                                                                      DocumentProcessor processor, Duration timeout) {
+        ConversionJob job = new ConversionJob(inputPath, outputFormat);
+        job.setProcessor(processor);
+        job.setTimeout(timeout);
+        return submit(job);
+    }
+
+    public CompletableFuture<List<ConversionResult>> batchConvertAsync(List<String> inputPaths, String outputFormat) {
+        return batchConvertAsync(inputPaths, outputFormat, null);
+    }
+
+    /**
+     * Converts every file as its own job. A job that times out or is cancelled
+     * yields a failed result in its slot; cancelling the returned future
+     * cancels the jobs that have not finished yet.
+     */
+    public CompletableFuture<List<ConversionResult>> batchConvertAsync(List<String> inputPaths, String outputFormat,
+                                                                      Duration perJobTimeout) {
+        List<CompletableFuture<ConversionResult>> jobs = new ArrayList<>(inputPaths.size());
+        for (String inputPath : inputPaths) {
+            jobs.add(convertDocumentAsync(inputPath, outputFormat, perJobTimeout)
+                    .exceptionally(e -> failedResult(inputPath, e)));
+        }
+
+        CompletableFuture<List<ConversionResult>> batch = CompletableFuture
+                .allOf(jobs.toArray(new CompletableFuture<?>[0]))
+                .thenApply(done -> {
+                    List<ConversionResult> results = new ArrayList<>(jobs.size());
+                    for (CompletableFuture<ConversionResult> job : jobs) {
+                        results.add(job.join());
+                    }
+                    return results;
+                });
+        batch.whenComplete((results, error) -> {
+            if (batch.isCancelled()) {
+                for (CompletableFuture<ConversionResult> job : jobs) {
+                    job.cancel(false);
+                }
+            }
+        });
+        return batch;
+    }
+
+    /**
+     * Streams batch results as they finish instead of collecting them in a
+     * list. Conversions only start when the subscriber has requested more
+     * results, so a subscriber that saves and releases each result keeps the
+     * batch's memory bounded by its demand. Results arrive in completion
+     * order; {@link ConversionResult#getInputPath()} identifies each one.
+     */
+    public Flow.Publisher<ConversionResult> batchConvertStream(List<String> inputPaths, String outputFormat) {
+        return batchConvertStream(inputPaths, outputFormat, null, WorkerPools.defaultParallelism());
+    }
+
+    public Flow.Publisher<ConversionResult> batchConvertStream(List<String> inputPaths, String outputFormat,
+                                                               DocumentProcessor processor, int maxConcurrency) {
+        return new BatchPublisher(this, inputPaths, outputFormat, processor, maxConcurrency);
+    }
+
+    /**
+     * Runs the job on the async executor and never blocks the caller. Cancelling
+     * the future, or passing its deadline, stops the job at the next stage
+     * boundary (load, convert, decorate, save); a stage that is already running
+     * is not interrupted. Conversion errors complete the future normally with a
+     * failed result; timeouts and cancellation complete it exceptionally.
+     */
+    public CompletableFuture<ConversionResult> submit(ConversionJob job) {
+        CompletableFuture<ConversionResult> future = new CompletableFuture<>();
+        Duration timeout = job.getTimeout();
+        long deadline = timeout != null ? System.nanoTime() + timeout.toNanos() : Long.MAX_VALUE;
+        if (timeout != null) {
+            // fails the future on time even while a stage is still running
+            future.orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        }
+
+        InFlightLimiter limiter = asyncLimiter;
+        limiter.submit(() -> {
+            if (future.isDone()) {
+                // cancelled or timed out while queued
+                limiter.release();
+                return;
+            }
+            try {
+                asyncExecutor().execute(() -> {
+                    long started = System.nanoTime();
+                    try {
+                        ConversionResult result = runJob(job, future, deadline);
+                        result.setInputPath(job.getInputPath());
+                        if (!future.complete(result) && result.getDocument() != null) {
+                            // nobody will read it any more
+                            result.getDocument().getContentSource().release();
+                        }
+                    } catch (CancellationException e) {
+                        // the future is already completed by cancel() or the deadline
+                    } catch (RuntimeException e) {
+                        future.completeExceptionally(e);
+                    } finally {
+                        limiter.release(System.nanoTime() - started);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                limiter.release();
+                future.completeExceptionally(e);
+            }
+        }, job.getPriority(), job.getTenant());
+        return future;
+    }
+
+    private ConversionResult runJob(ConversionJob job, CompletableFuture<?> future, long deadline) {
+        long startTime = System.currentTimeMillis();
+        String inputPath = job.getInputPath();
+        String outputFormat = job.getOutputFormat();
+        DocumentProcessor processor = job.getProcessor();
+
+        try {
+            checkpoint(future, deadline, "load", inputPath);
+            Document input = loadDocumentFromFile(inputPath, outputFormat);
+
+            CacheKey cacheKey = cacheKeyFor(input, outputFormat, processor);
+            Document output = fromCache(cacheKey, input, outputFormat);
+            boolean cached = output != null;
+            if (!cached) {
+                checkpoint(future, deadline, "convert", inputPath);
+                output = selectPlan(input.getFormat(), outputFormat).execute(input);
+
+                if (processor != null) {
+                    checkpoint(future, deadline, "decorate", inputPath);
+                    output = FusedPipeline.compile(processor).process(output);
+                }
+                storeInCache(cacheKey, output);
+            }
+
+            if (job.getOutputPath() != null) {
+                checkpoint(future, deadline, "save", inputPath);
+                saveDocument(output, job.getOutputPath());
+            }
+            return new ConversionResult(output, true, cached ? "Conversion successful (cached)"
+                    : "Conversion successful", System.currentTimeMillis() - startTime);
+
+        } catch (CancellationException e) {
+            throw e;
+        } catch (Exception e) {
+            subject.notifyObservers("Conversion failed for " + inputPath + ": " + e.getMessage());
+            return new ConversionResult(null, false, "Conversion failed: " + e.getMessage());
+        }
+    }
+
+    private static void checkpoint(CompletableFuture<?> future, long deadline, String stage, String inputPath) {
+        if (deadline != Long.MAX_VALUE && System.nanoTime() - deadline >= 0) {
+            future.completeExceptionally(new TimeoutException("Deadline passed before " + stage + " of " + inputPath));
+        }
+        if (future.isDone()) {
+            throw new CancellationException("Stopped before " + stage + " of " + inputPath);
+        }
+    }
+
+    static ConversionResult failedResult(String inputPath, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        ConversionResult result;
+        if (cause instanceof TimeoutException) {
+            result = new ConversionResult(null, false, "Conversion timed out: " + inputPath);
+        } else if (cause instanceof CancellationException) {
+            result = new ConversionResult(null, false, "Conversion cancelled: " + inputPath);
+        } else {
+            result = new ConversionResult(null, false, "Conversion failed: " + cause.getMessage());
+        }
+        result.setInputPath(inputPath);
+        return result;
+    }
+
+    private ExecutorService asyncExecutor() {
+        ExecutorService executor = asyncExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = asyncExecutor;
+                if (executor == null) {
+                    executor = WorkerPools.newVirtualPool("async-conversion");
+                    asyncExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Converts the input unless the batch has already seen the same content
+     * for the same target format; duplicates get their own handle on the
+     * first result's content, named after their own input. The input is
+     * sniffed and route-checked before it is hashed, and the hash is reused
+     * for the result cache key. A key match is confirmed byte for byte, since
+     * XXH64 is not collision-resistant. A duplicate's result completes with
+     * its original's, so callers can wait without holding up a worker.
+     */
+    private CompletableFuture<ConversionResult> convertOnce(String inputPath, String outputFormat,
+                                                            Map<String, BatchOriginal> seen,
+                                                            AtomicInteger duplicates, FileConversion convert) {
+        if (!batchDeduplication) {
+            return CompletableFuture.completedFuture(convert.convert(inputPath, outputFormat, null));
+        }
+        LoadedInput loaded = loadForDedup(inputPath, outputFormat);
+        if (loaded.failure != null) {
+            // unreadable and unsupported inputs are reported by the conversion itself
+            return CompletableFuture.completedFuture(convert.convert(inputPath, outputFormat, loaded));
+        }
+        Document input = loaded.document;
+        String key = ContentHash.toHex(loaded.contentHash) + '/' + input.getFileSize() + '/'
+                + input.getFormat() + '/' + outputFormat.toUpperCase(Locale.ROOT);
+
+        BatchOriginal mine = new BatchOriginal(input);
+        BatchOriginal first = seen.putIfAbsent(key, mine);
+        if (first == null) {
+            ConversionResult result;
+            try {
+                result = convert.convert(inputPath, outputFormat, loaded);
+            } catch (RuntimeException e) {
+                mine.result.completeExceptionally(e);
+                throw e;
+            }
+            result.setInputPath(inputPath);
+            Document output = result.getDocument();
+            if (result.isSuccess() && output != null && output.getContentSource() != null) {
+                result.setDocument(copyOf(output, new SharedContent(output.getContentSource()),
+                        output.getFileName()));
+            }
+            mine.result.complete(result);
+            return mine.result;
+        }
+
+        if (!sameContent(input, first.input)) {
+            // a hash collision, not a duplicate
+            ConversionResult result = convert.convert(inputPath, outputFormat, loaded);
+            result.setInputPath(inputPath);
+            return CompletableFuture.completedFuture(result);
+        }
+        return first.result.thenApply(original -> {
+            ConversionResult copy = duplicateOf(original, inputPath, outputFormat);
+            if (copy == null) {
+                // the first result was already released; convert this input on its own
+                copy = convert.convert(inputPath, outputFormat, loaded);
+            } else {
+                duplicates.incrementAndGet();
+            }
+            copy.setInputPath(inputPath);
+            return copy;
+        });
+    }
+
+    /**
+     * @return the copy, or null if the original's content can no longer be shared
+     */
+    private static ConversionResult duplicateOf(ConversionResult original, String inputPath, String outputFormat) {
+        if (!original.isSuccess() || original.getDocument() == null) {
+            return new ConversionResult(null, false, original.getMessage());
+        }
+        Document source = original.getDocument();
+        SharedContent content = source.getContentSource() instanceof SharedContent
+                ? ((SharedContent) source.getContentSource()).retain() : null;
+        if (content == null) {
+            return null;
+        }
+        Document output = copyOf(source, content,
+                outputFileName(Paths.get(inputPath).getFileName().toString(), outputFormat));
+        output.addMetadata("deduplicated_from", original.getInputPath());
+        return new ConversionResult(output, true,
+                "Conversion successful (duplicate of " + original.getInputPath() + ")", 0);
+    }
+
+    private static boolean sameContent(Document a, Document b) {
+        if (a.getFileSize() != b.getFileSize()) {
+            return false;
+        }
+        BufferPool pool = BufferPool.shared();
+        byte[] left = pool.borrowHeap(ContentSource.TRANSFER_BUFFER_SIZE);
+        byte[] right = pool.borrowHeap(ContentSource.TRANSFER_BUFFER_SIZE);
+        try (InputStream x = a.openContentStream(); InputStream y = b.openContentStream()) {
+            while (true) {
+                int read = x.readNBytes(left, 0, ContentSource.TRANSFER_BUFFER_SIZE);
+                if (y.readNBytes(right, 0, ContentSource.TRANSFER_BUFFER_SIZE) != read
+                        || !Arrays.equals(left, 0, read, right, 0, read)) {
+                    return false;
+                }
+                if (read < ContentSource.TRANSFER_BUFFER_SIZE) {
+                    return true;
+                }
+            }
+        } catch (IOException e) {
+            // can't confirm the match, so don't reuse the result
+            return false;
+        } finally {
+            pool.release(left);
+            pool.release(right);
+        }
+    }
+
+    /**
+     * Sniffs and route-checks the file, then hashes it; a failure is kept
+     * for the conversion to report.
+     */
+    private LoadedInput loadForDedup(String inputPath, String outputFormat) {
+        Document input;
+        try {
+            input = loadDocumentFromFile(inputPath, outputFormat);
+        } catch (IOException | ConversionException | RuntimeException e) {
+            return new LoadedInput(null, 0, e);
+        }
+        try (InputStream in = input.openContentStream()) {
+            return new LoadedInput(input, ContentHash.hash(in), null);
+        } catch (IOException e) {
+            return new LoadedInput(null, 0, e);
+        }
+    }
+
+    private static Document copyOf(Document source, ContentSource content, String fileName) {
+        Document copy = new Document(content, source.getFormat(), fileName);
+        copy.setMetadata(source.getMetadata());
+        return copy;
+    }
+
+    private String dedupSummary(int total, AtomicInteger duplicates) {
+        if (!batchDeduplication) {
+            return "";
+        }
+        int hits = duplicates.get();
+        return ": " + total + " files, " + (total - hits) + " unique, " + hits + " duplicates reused";
+    }
+
+    private void reportBatchProgress(Object batch, int done, int total, AtomicInteger lastReported) {
+        int progress = (int) (done * 100.0 / total);
+        int previous = lastReported.get();
+        // only one worker reports each percentage step, so 10k files don't produce 10k events
+        if (progress > previous && lastReported.compareAndSet(previous, progress)) {
+            subject.notifyObservers(batch, "Converted " + done + " of " + total + " files", progress);
+        }
+    }
+
+    private ConversionResult awaitResult(Future<ConversionResult> future, String inputPath) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            return new ConversionResult(null, false, "Conversion interrupted: " + inputPath);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            return new ConversionResult(null, false, "Conversion failed: " + cause.getMessage());
+        }
+    }
+
+    private ConversionResult convertFile(String inputPath, String outputFormat, LoadedInput loaded) {
+        long startTime = System.currentTimeMillis();
+
+        try {
+            Document input = loadInput(inputPath, outputFormat, loaded);
+
+            CacheKey cacheKey = fileCacheKey(input, outputFormat, loaded);
+            Document cached = fromCache(cacheKey, input, outputFormat);
+            if (cached != null) {
+                return new ConversionResult(cached, true, "Conversion successful (cached)",
+                        System.currentTimeMillis() - startTime);
+            }
+
+            Document output = selectPlan(input.getFormat(), outputFormat).execute(input);
+            storeInCache(cacheKey, output);
+
+            long endTime = System.currentTimeMillis();
+            return new ConversionResult(output, true, "Conversion successful", endTime - startTime);
+
+        } catch (Exception e) {
+            subject.notifyObservers("Conversion failed for " + inputPath + ": " + e.getMessage());
+            return new ConversionResult(null, false, "Conversion failed: " + e.getMessage());
+        }
+    }
+
+    private CacheKey cacheKeyFor(Document input, String outputFormat, DocumentProcessor processor)
+            throws IOException {
+        ConversionCache cache = resultCache;
+        return cache != null ? cache.keyFor(input, outputFormat, processor) : null;
+    }
+
+    private CacheKey fileCacheKey(Document input, String outputFormat, LoadedInput loaded) throws IOException {
+        if (loaded == null) {
+            return cacheKeyFor(input, outputFormat, null);
+        }
+        ConversionCache cache = resultCache;
+        return cache != null ? cache.keyFor(loaded.contentHash, input, outputFormat, null) : null;
+    }
+
+    private Document loadInput(String inputPath, String outputFormat, LoadedInput loaded)
+            throws IOException, ConversionException {
+        return loaded != null ? loaded.getDocument() : loadDocumentFromFile(inputPath, outputFormat);
+    }
+
+    private Document fromCache(CacheKey key, Document input, String outputFormat) {
+        ConversionCache cache = resultCache;
+        if (cache == null || key == null) {
+            return null;
+        }
+        Document cached = cache.get(key);
+        if (cached != null) {
+            // the cached copy carries the name of whichever input produced it first
+            cached.setFileName(outputFileName(input.getFileName(), outputFormat));
+        }
+        return cached;
+    }
+
+    private void storeInCache(CacheKey key, Document output) {
+        ConversionCache cache = resultCache;
+        if (cache != null && key != null) {
+            cache.put(key, output);
+        }
+    }
+
+    private static String outputFileName(String inputFileName, String outputFormat) {
+        int dotIndex = inputFileName.lastIndexOf('.');
+        String baseName = dotIndex > 0 ? inputFileName.substring(0, dotIndex) : inputFileName;
+        return baseName + "." + outputFormat.toLowerCase();
+    }
+
     public void saveDocument(Document document, String outputPath) throws IOException {
-        subject.notifyObservers("Saving document to: " + outputPath, 90);
+        subject.notifyObservers(outputPath, "Saving document to: " + outputPath, 90);
         
         Path path = Paths.get(outputPath);
-        Files.write(path, document.getContent());
+        long start = System.nanoTime();
+        try {
+            // temp file + rename: readers never see a partially written output
+            outputWriter.write(document.getContentSource(), path);
+        } catch (IOException | RuntimeException e) {
+            saveMetrics.recordError();
+            throw e;
+        }
+        long size = document.getFileSize();
+        saveMetrics.record(System.nanoTime() - start, size, size);
         
-        subject.notifyObservers("Document saved successfully", 100);
+        subject.notifyObservers(outputPath, "Document saved successfully", 100);
         System.out.println("Document saved to: " + outputPath);
     }
 
-    private ConversionStrategy selectStrategy(String inputFormat, String outputFormat) 
-            throws ConversionException {
-        
-        // document factory
-        if (documentFactory.supportsConversion(inputFormat, outputFormat)) {
-            return documentFactory.createConverter(inputFormat, outputFormat);
+    /**
+     * Saves several documents as one batch: every file is written first and the
+     * fsync and rename work is done together at the end.
+     */
+    public void saveDocuments(List<Document> documents, List<String> outputPaths) throws IOException {
+        if (documents.size() != outputPaths.size()) {
+            throw new IllegalArgumentException("Expected one output path per document");
         }
-        
-        // image factory
-        if (imageFactory.supportsConversion(inputFormat, outputFormat)) {
-            return imageFactory.createConverter(inputFormat, outputFormat);
+        subject.notifyObservers(outputPaths, "Saving " + documents.size() + " documents", 90);
+
+        long start = System.nanoTime();
+        long bytes = 0;
+        try (AtomicFileWriter.Batch batch = outputWriter.newBatch()) {
+            for (int i = 0; i < documents.size(); i++) {
+                batch.add(documents.get(i).getContentSource(), Paths.get(outputPaths.get(i)));
+                bytes += documents.get(i).getFileSize();
+            }
+            batch.commit();
+        } catch (IOException | RuntimeException e) {
+            saveMetrics.recordError();
+            throw e;
         }
+        // one sample for the whole batch: that is the unit whose latency callers wait on
+        saveMetrics.record(System.nanoTime() - start, bytes, bytes);
+
+        subject.notifyObservers(outputPaths, "Saved " + documents.size() + " documents", 100);
+    }
+
+    private ConversionPlan selectPlan(String inputFormat, String outputFormat) 
+            throws ConversionException {
         
-        // adapters
-        for (ConversionStrategy adapter : availableAdapters) {
-            if (adapter.supports(inputFormat, outputFormat)) {
-                return adapter;
-            }
+        // direct routes come from the registry; otherwise the planner chains strategies
+        ConversionPlan plan = planner.plan(inputFormat, outputFormat);
+        if (plan != null) {
+            return plan;
         }
         
         throw new ConversionException("No suitable converter found for " + 
             inputFormat + " -> " + outputFormat);
     }
 
-    private Document loadDocumentFromFile(String filePath) throws IOException {
+    /**
+     * Sniffs the file header and checks that a route to the output format
+     * exists, so unsupported inputs are rejected before anything reads or
+     * hashes the whole file.
+     */
+    private Document loadDocumentFromFile(String filePath, String outputFormat)
+            throws IOException, ConversionException {
+        long start = System.nanoTime();
         Path path = Paths.get(filePath);
         
         if (!Files.exists(path)) {
+            loadMetrics.recordError();
             throw new IOException("File not found: " + filePath);
         }
         
-        byte[] content = Files.readAllBytes(path);
+        // content is opened lazily by the strategies/decorators that need it
+        FileContent content;
         String fileName = path.getFileName().toString();
-        String format = extractFormat(fileName);
+        String format;
+        try {
+            content = new FileContent(path);
+            format = detectFormat(FormatSniffer.sniff(path), fileName);
+            selectPlan(format, outputFormat);
+        } catch (IOException | ConversionException | RuntimeException e) {
+            loadMetrics.recordError();
+            throw e;
+        }
         
+        loadMetrics.record(System.nanoTime() - start, content.size(), content.size());
+        return new Document(content, format, fileName);
+    }
+
+    /**
+     * Loads a document from a stream, e.g. an upload. The format is sniffed
+     * from the first bytes and the route checked before the rest is read, so
+     * unsupported input is rejected without receiving it. The body goes into
+     * a {@link ContentBuffer} that spills to a temporary file past
+     * {@code spillThreshold} bytes; release the document when done with it.
+     */
+    public Document loadDocument(InputStream in, String fileName, String outputFormat, int spillThreshold)
+            throws IOException, ConversionException {
+        long start = System.nanoTime();
+        ContentSource content;
+        String format;
+        try {
+            byte[] header = in.readNBytes(FormatSniffer.HEADER_SIZE);
+            format = detectFormat(FormatSniffer.sniff(header, header.length), fileName);
+            selectPlan(format, outputFormat);
+
+            ContentBuffer buffer = new ContentBuffer(spillThreshold);
+            try {
+                buffer.write(header);
+                in.transferTo(buffer);
+                content = buffer.toContentSource();
+            } finally {
+                buffer.close();
+            }
+        } catch (IOException | ConversionException | RuntimeException e) {
+            loadMetrics.recordError();
+            throw e;
+        }
+
+        loadMetrics.record(System.nanoTime() - start, content.size(), content.size());
+        return new Document(content, format, fileName);
+    }
+
+    /**
+     * Wraps content that may still be arriving, such as an
+     * {@link model.IncomingContent} upload. The format is sniffed from the
+     * first bytes and the route checked without waiting for the rest, so the
+     * document can be converted while it is still being received.
+     */
+    public Document loadDocument(ContentSource content, String fileName, String outputFormat)
+            throws IOException, ConversionException {
+        long start = System.nanoTime();
+        String format;
+        try (InputStream in = content.openStream()) {
+            byte[] header = in.readNBytes(FormatSniffer.HEADER_SIZE);
+            format = detectFormat(FormatSniffer.sniff(header, header.length), fileName);
+            selectPlan(format, outputFormat);
+        } catch (IOException | ConversionException | RuntimeException e) {
+            loadMetrics.recordError();
+            throw e;
+        }
+
+        loadMetrics.record(System.nanoTime() - start, content.size(), content.size());
         return new Document(content, format, fileName);
     }
 
+    /**
+     * A recognized signature wins over the file extension. Content without
+     * one (plain text, unknown binary, a ZIP whose header shows no OOXML part)
+     * keeps the extension's format unless strict detection is on.
+     */
+    private String detectFormat(FormatSniffer.Result sniffed, String fileName) throws ConversionException {
+        Format named = Format.of(extractFormat(fileName));
+
+        switch (sniffed.getKind()) {
+            case SIGNATURE:
+                Format content = sniffed.getFormat();
+                if (named == Format.JPG && content == Format.JPEG) {
+                    return named.name();
+                }
+                if (named != content) {
+                    System.out.println("ConversionFacade: " + fileName + " is named as " + named
+                            + " but its content is " + content);
+                }
+                return content.name();
+            case FOREIGN_ARCHIVE:
+                // [Content_Types].xml may sit past the sniffed header, so only the name can vouch for it
+                if (named == Format.TXT || named == Format.UNKNOWN) {
+                    throw new ConversionException("Unsupported input " + fileName + ": ZIP archive is not an OOXML document");
+                }
+                break;
+            case TEXT:
+                if (named == Format.TXT || named == Format.UNKNOWN) {
+                    return Format.TXT.name();
+                }
+                break;
+            default:
+                if (named == Format.TXT || named == Format.UNKNOWN) {
+                    throw new ConversionException("Unsupported input " + fileName + ": unrecognized binary content");
+                }
+        }
+        if (strictFormatDetection) {
+            throw new ConversionException("Unsupported input " + fileName + ": content is not " + named);
+        }
+        return named.name();
+    }
+
     private String extractFormat(String fileName) {
         int dotIndex = fileName.lastIndexOf('.');
         if (dotIndex > 0 && dotIndex < fileName.length() - 1) {
@@ -199,4 +1163,53 @@ public class ConversionFacade {
         }
         return "UNKNOWN";
     }
+
+    @FunctionalInterface
+    private interface FileConversion {
+        /**
+         * @param loaded the input as batch deduplication loaded it, or null to load it here
+         */
+        ConversionResult convert(String inputPath, String outputFormat, LoadedInput loaded);
+    }
+
+    /**
+     * An input loaded and hashed once for deduplication, or the reason it
+     * could not be.
+     */
+    private static final class LoadedInput {
+        private final Document document;
+        private final long contentHash;
+        private final Exception failure;
+
+        LoadedInput(Document document, long contentHash, Exception failure) {
+            this.document = document;
+            this.contentHash = contentHash;
+            this.failure = failure;
+        }
+
+        Document getDocument() throws IOException, ConversionException {
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            }
+            if (failure instanceof ConversionException) {
+                throw (ConversionException) failure;
+            }
+            if (failure != null) {
+                throw (RuntimeException) failure;
+            }
+            return document;
+        }
+    }
+
+    /**
+     * First input of a batch with a given dedup key, and its result.
+     */
+    private static final class BatchOriginal {
+        private final Document input;
+        private final CompletableFuture<ConversionResult> result = new CompletableFuture<>();
+
+        BatchOriginal(Document input) {
+            this.input = input;
+        }
+    }
 }
@@ -0,0 +1,92 @@
+package facade;
+
+import decorator.DocumentProcessor;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * One asynchronous conversion: load, convert, optionally decorate and
+ * optionally save. Submitted through {@link ConversionFacade#submit}.
+ */
+public class ConversionJob {
+
+    public static final String DEFAULT_TENANT = "default";
+
+    private final String inputPath;
+    private final String outputFormat;
+    private DocumentProcessor processor;
+    private String outputPath;
+    private Duration timeout;
+    private JobPriority priority = JobPriority.NORMAL;
+    private String tenant = DEFAULT_TENANT;
+
+    public ConversionJob(String inputPath, String outputFormat) {
+        this.inputPath = inputPath;
+        this.outputFormat = outputFormat;
+    }
+
+    public String getInputPath() {
+        return inputPath;
+    }
+
+    public String getOutputFormat() {
+        return outputFormat;
+    }
+
+    public DocumentProcessor getProcessor() {
+        return processor;
+    }
+
+    public void setProcessor(DocumentProcessor processor) {
+        this.processor = processor;
+    }
+
+    public String getOutputPath() {
+        return outputPath;
+    }
+
+    /**
+     * Saves the result here as the last stage; if unset the result is only returned.
+     */
+    public void setOutputPath(String outputPath) {
+        this.outputPath = outputPath;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Deadline for the whole job, counted from submission and including time
+     * spent waiting for an in-flight slot.
+     */
+    public void setTimeout(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    public JobPriority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Scheduling class while the job waits for an in-flight slot; defaults
+     * to {@code NORMAL}.
+     */
+    public void setPriority(JobPriority priority) {
+        this.priority = Objects.requireNonNull(priority, "priority");
+    }
+
+    public String getTenant() {
+        return tenant;
+    }
+
+    /**
+     * Who the job is run for, e.g. a customer or a tag; waiting jobs of the
+     * same class are shared out between tenants by
+     * {@link ConversionFacade#setTenantWeight weight}.
+     */
+    public void setTenant(String tenant) {
+        this.tenant = Objects.requireNonNull(tenant, "tenant");
+    }
+}
@@ -0,0 +1,120 @@
+package facade;
+
+import metrics.MetricsRegistry;
+import metrics.StageMetrics;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Waiting room for async jobs: strict priority between {@link JobPriority}
+ * classes, weighted fair queuing between tenants inside a class. Each job is
+ * stamped with a virtual finish time, {@code max(now, tenant's last finish) +
+ * 1 / weight}, and the smallest stamp goes first, so a tenant with a
+ * thousand queued jobs does not hold up one that just arrived.
+ * Not thread-safe; {@link InFlightLimiter} guards it.
+ */
+final class FairQueue {
+
+    private final Map<String, Integer> weights;
+    private final ClassQueue[] classes = new ClassQueue[JobPriority.values().length];
+    private long sequence;
+    private int size;
+
+    FairQueue(Map<String, Integer> weights) {
+        this.weights = weights;
+        for (JobPriority priority : JobPriority.values()) {
+            classes[priority.ordinal()] = new ClassQueue(priority);
+        }
+    }
+
+    void offer(Runnable start, JobPriority priority, String tenant) {
+        classes[priority.ordinal()].offer(start, tenant, weightOf(tenant), sequence++);
+        size++;
+    }
+
+    /**
+     * The class of the job that would start next, or null if nothing waits.
+     */
+    JobPriority peekPriority() {
+        for (ClassQueue queue : classes) {
+            if (!queue.jobs.isEmpty()) {
+                return queue.priority;
+            }
+        }
+        return null;
+    }
+
+    Runnable poll() {
+        for (ClassQueue queue : classes) {
+            if (!queue.jobs.isEmpty()) {
+                size--;
+                return queue.poll();
+            }
+        }
+        return null;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int weightOf(String tenant) {
+        Integer weight = weights.get(tenant);
+        return weight != null ? weight : 1;
+    }
+
+    private static final class ClassQueue {
+        private final JobPriority priority;
+        private final StageMetrics queueWait;
+        private final PriorityQueue<Waiting> jobs = new PriorityQueue<>();
+        private final Map<String, Double> lastFinish = new HashMap<>();
+        private double virtualTime;
+
+        ClassQueue(JobPriority priority) {
+            this.priority = priority;
+            this.queueWait = MetricsRegistry.shared().stage(MetricsRegistry.QUEUE,
+                    priority.name().toLowerCase(Locale.ROOT));
+        }
+
+        void offer(Runnable start, String tenant, int weight, long sequence) {
+            double begin = Math.max(virtualTime, lastFinish.getOrDefault(tenant, 0.0));
+            double finish = begin + 1.0 / weight;
+            lastFinish.put(tenant, finish);
+            jobs.add(new Waiting(start, finish, sequence, System.nanoTime()));
+        }
+
+        Runnable poll() {
+            Waiting next = jobs.poll();
+            virtualTime = next.finish;
+            if (jobs.isEmpty()) {
+                // everyone is caught up; forget tenants that have gone quiet
+                lastFinish.clear();
+            }
+            queueWait.record(System.nanoTime() - next.enqueued, 0, 0);
+            return next.start;
+        }
+    }
+
+    private static final class Waiting implements Comparable<Waiting> {
+        private final Runnable start;
+        private final double finish;
+        private final long sequence;
+        private final long enqueued;
+
+        Waiting(Runnable start, double finish, long sequence, long enqueued) {
+            this.start = start;
+            this.finish = finish;
+            this.sequence = sequence;
+            this.enqueued = enqueued;
+        }
+
+        @Override
+        public int compareTo(Waiting other) {
+            int byFinish = Double.compare(finish, other.finish);
+            return byFinish != 0 ? byFinish : Long.compare(sequence, other.sequence);
+        }
+    }
+}
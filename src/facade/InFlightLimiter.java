@@ -0,0 +1,105 @@
+package facade;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caps how many async jobs run at once without blocking the submitter:
+ * jobs over the limit wait in a {@link FairQueue} and are started as others
+ * finish. A few slots are held back for {@code INTERACTIVE} jobs so they
+ * never wait for a long bulk job to end.
+ * With an {@link AdaptiveLimit} the cap moves with every finished job.
+ */
+final class InFlightLimiter {
+
+    // share of the limit only INTERACTIVE jobs may use
+    private static final int INTERACTIVE_RESERVE_DIVISOR = 8;
+
+    private final AdaptiveLimit adaptive;
+    private volatile int limit;
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger draining = new AtomicInteger();
+    private final FairQueue waiting;
+
+    InFlightLimiter(int limit, Map<String, Integer> tenantWeights) {
+        this.adaptive = null;
+        this.limit = Math.max(1, limit);
+        this.waiting = new FairQueue(tenantWeights);
+    }
+
+    InFlightLimiter(AdaptiveLimit adaptive, Map<String, Integer> tenantWeights) {
+        this.adaptive = adaptive;
+        this.limit = adaptive.getLimit();
+        this.waiting = new FairQueue(tenantWeights);
+    }
+
+    void submit(Runnable start, JobPriority priority, String tenant) {
+        synchronized (waiting) {
+            waiting.offer(start, priority, tenant);
+        }
+        drain();
+    }
+
+    void release() {
+        running.decrementAndGet();
+        drain();
+    }
+
+    /**
+     * Releases the slot of a job that ran for {@code latencyNanos}.
+     */
+    void release(long latencyNanos) {
+        int stillRunning = running.decrementAndGet();
+        if (adaptive != null) {
+            limit = adaptive.onSample(latencyNanos, stillRunning, getWaiting());
+        }
+        drain();
+    }
+
+    int getRunning() {
+        return running.get();
+    }
+
+    int getWaiting() {
+        synchronized (waiting) {
+            return waiting.size();
+        }
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    private void drain() {
+        // one thread starts jobs at a time. A call made meanwhile, including a
+        // re-entrant one from a start action that releases its slot right away,
+        // only makes that thread go round again, so the stack never grows
+        if (draining.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            while (true) {
+                Runnable next;
+                synchronized (waiting) {
+                    JobPriority priority = waiting.peekPriority();
+                    if (priority == null || running.get() >= slotsFor(priority)) {
+                        break;
+                    }
+                    next = waiting.poll();
+                    running.incrementAndGet();
+                }
+                next.run();
+            }
+            missed = draining.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private int slotsFor(JobPriority priority) {
+        int current = limit;
+        if (priority == JobPriority.INTERACTIVE || current < 2) {
+            return current;
+        }
+        return current - Math.max(1, current / INTERACTIVE_RESERVE_DIVISOR);
+    }
+}
@@ -0,0 +1,12 @@
+package facade;
+
+/**
+ * Scheduling class of an async job. Waiting jobs of a higher class always
+ * start before those of a lower one; within a class, tenants share the
+ * slots by weight.
+ */
+public enum JobPriority {
+    INTERACTIVE,
+    NORMAL,
+    BULK
+}
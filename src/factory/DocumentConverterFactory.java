@@ -5,17 +5,18 @@ import strategy.PdfToDocxStrategy;
 import strategy.DocxToTxtStrategy;
 
 public class DocumentConverterFactory extends ConverterFactory {
+
+    // strategies are stateless, so every caller can share one instance
+    private static final ConversionStrategy PDF_TO_DOCX = new PdfToDocxStrategy();
+    private static final ConversionStrategy DOCX_TO_TXT = new DocxToTxtStrategy();
     
     @Override
     public ConversionStrategy createConverter(String inputFormat, String outputFormat) {
-        System.out.println("DocumentConverterFactory: Creating converter for " + 
-            inputFormat + " -> " + outputFormat);
-        
         if ("PDF".equalsIgnoreCase(inputFormat) && "DOCX".equalsIgnoreCase(outputFormat)) {
-            return new PdfToDocxStrategy();
+            return PDF_TO_DOCX;
         } 
         else if ("DOCX".equalsIgnoreCase(inputFormat) && "TXT".equalsIgnoreCase(outputFormat)) {
-            return new DocxToTxtStrategy();
+            return DOCX_TO_TXT;
         }
         
         throw new UnsupportedOperationException(
@@ -4,14 +4,14 @@ import strategy.ConversionStrategy;
 import strategy.ImageToPdfStrategy;
 
 public class ImageConverterFactory extends ConverterFactory {
+
+    // strategies are stateless, so every caller can share one instance
+    private static final ConversionStrategy IMAGE_TO_PDF = new ImageToPdfStrategy();
     
     @Override
     public ConversionStrategy createConverter(String inputFormat, String outputFormat) {
-        System.out.println("ImageConverterFactory: Creating converter for " + 
-            inputFormat + " -> " + outputFormat);
-        
         if (isImageFormat(inputFormat) && "PDF".equalsIgnoreCase(outputFormat)) {
-            return new ImageToPdfStrategy();
+            return IMAGE_TO_PDF;
         }
         
         throw new UnsupportedOperationException(
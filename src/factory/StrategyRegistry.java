@@ -0,0 +1,67 @@
+package factory;
+
+import model.Format;
+import strategy.ConversionStrategy;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Precomputed (input format, output format) -> strategy table. Built once from
+ * the factories and adapters, in the same precedence the facade used to probe
+ * them; lookups afterwards are a single array access.
+ */
+public class StrategyRegistry {
+
+    private static final Format[] FORMATS = Format.values();
+
+    private final ConversionStrategy[] routes = new ConversionStrategy[FORMATS.length * FORMATS.length];
+
+    public StrategyRegistry(List<ConverterFactory> factories, List<ConversionStrategy> adapters) {
+        // strategies are stateless, so one instance per class serves every route
+        Map<Class<?>, ConversionStrategy> singletons = new IdentityHashMap<>();
+
+        for (Format input : FORMATS) {
+            for (Format output : FORMATS) {
+                if (output == Format.UNKNOWN) {
+                    continue;
+                }
+                routes[index(input, output)] = findStrategy(input, output, factories, adapters, singletons);
+            }
+        }
+    }
+
+    public ConversionStrategy resolve(Format input, Format output) {
+        return routes[index(input, output)];
+    }
+
+    public ConversionStrategy resolve(String inputFormat, String outputFormat) {
+        return resolve(Format.of(inputFormat), Format.of(outputFormat));
+    }
+
+    public boolean supports(Format input, Format output) {
+        return resolve(input, output) != null;
+    }
+
+    private static ConversionStrategy findStrategy(Format input, Format output, List<ConverterFactory> factories,
+                                                   List<ConversionStrategy> adapters,
+                                                   Map<Class<?>, ConversionStrategy> singletons) {
+        for (ConverterFactory factory : factories) {
+            if (factory.supportsConversion(input.name(), output.name())) {
+                ConversionStrategy strategy = factory.createConverter(input.name(), output.name());
+                return singletons.computeIfAbsent(strategy.getClass(), type -> strategy);
+            }
+        }
+        for (ConversionStrategy adapter : adapters) {
+            if (adapter.supports(input.name(), output.name())) {
+                return adapter;
+            }
+        }
+        return null;
+    }
+
+    private static int index(Format input, Format output) {
+        return input.ordinal() * FORMATS.length + output.ordinal();
+    }
+}
@@ -0,0 +1,472 @@
+package ingest;
+
+import decorator.DocumentProcessor;
+import facade.ConversionFacade;
+import model.ConversionResult;
+import model.Document;
+import util.WorkerPools;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Long-running hot-folder ingest. Files dropped into the input folder are
+ * picked up from {@link WatchService} events, converted once their size and
+ * modification time have stopped changing, and written to the output folder.
+ * Outputs never overwrite each other or earlier outputs: a taken name gets a
+ * {@code -2}, {@code -3}, ... suffix. Converted inputs are moved to the
+ * archive folder ({@code archive} inside the input folder unless set
+ * otherwise), and inputs that fail are moved to the failed folder next to a
+ * {@code .error} note. When {@code maxInFlight} conversions are running the watcher thread
+ * blocks, so work never queues up in memory beyond that limit.
+ *
+ * <p>Outputs are saved with group commit: while one worker fsyncs a group of
+ * outputs, the ones finished meanwhile queue up and go out together in the
+ * next group, so a burst of files shares its fsyncs.
+ */
+public class HotFolderWatcher implements AutoCloseable {
+
+    private static final long DEFAULT_SETTLE_MILLIS = 200;
+
+    private final ConversionFacade facade;
+    private final Path inputDir;
+    private final Path outputDir;
+    private final Path failedDir;
+    private final String outputFormat;
+
+    private DocumentProcessor processor;
+    private Path archiveDir;
+    private long settleMillis = DEFAULT_SETTLE_MILLIS;
+    private int maxInFlight = WorkerPools.defaultParallelism();
+    private ExecutorService executor;
+    private boolean ownsExecutor;
+
+    private final Map<Path, PendingFile> pending = new HashMap<>(); // watcher thread only
+    private final Set<Path> inFlight = ConcurrentHashMap.newKeySet();
+    private final AtomicLong converted = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    // output paths of inputs in flight; saved outputs are guarded by the file existing
+    private final Set<Path> claimedOutputs = ConcurrentHashMap.newKeySet();
+
+    // guarded by saveLock
+    private final Object saveLock = new Object();
+    private List<ConvertedFile> unsaved = new ArrayList<>();
+    private boolean saving;
+
+    private Semaphore permits;
+    private WatchService watchService;
+    private Thread watcherThread;
+    private volatile boolean running;
+
+    public HotFolderWatcher(ConversionFacade facade, Path inputDir, Path outputDir, Path failedDir,
+                            String outputFormat) {
+        this.facade = facade;
+        this.inputDir = inputDir;
+        this.outputDir = outputDir;
+        this.failedDir = failedDir;
+        this.outputFormat = outputFormat;
+        this.archiveDir = inputDir.resolve("archive");
+    }
+
+    public void setProcessor(DocumentProcessor processor) {
+        this.processor = processor;
+    }
+
+    /**
+     * Where converted inputs are moved; {@code null} deletes them instead.
+     */
+    public void setArchiveDir(Path archiveDir) {
+        this.archiveDir = archiveDir;
+    }
+
+    /**
+     * How long a file's size and modification time must stay unchanged
+     * before it is treated as completely written.
+     */
+    public void setSettleMillis(long settleMillis) {
+        this.settleMillis = Math.max(0, settleMillis);
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        Files.createDirectories(inputDir);
+        Files.createDirectories(outputDir);
+        Files.createDirectories(failedDir);
+        if (archiveDir != null) {
+            Files.createDirectories(archiveDir);
+        }
+
+        permits = new Semaphore(maxInFlight);
+        if (executor == null) {
+            executor = WorkerPools.newPlatformPool(maxInFlight, "hot-folder");
+            ownsExecutor = true;
+        }
+        watchService = inputDir.getFileSystem().newWatchService();
+        // register before the initial scan so nothing that lands in between is missed
+        inputDir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        running = true;
+        watcherThread = new Thread(this::watchLoop, "hot-folder-watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+        System.out.println("HotFolderWatcher: Watching " + inputDir + " -> " + outputDir + " (" + outputFormat + ")");
+    }
+
+    /**
+     * Stops watching and waits up to the timeout for running conversions.
+     */
+    public synchronized boolean stop(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!running) {
+            return true;
+        }
+        running = false;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            System.err.println("HotFolderWatcher: Failed to close watch service: " + e.getMessage());
+        }
+        watcherThread.join(unit.toMillis(timeout));
+
+        boolean drained = permits.tryAcquire(maxInFlight, timeout, unit);
+        if (drained) {
+            permits.release(maxInFlight);
+        }
+        if (ownsExecutor) {
+            executor.shutdown();
+            executor = null;
+            ownsExecutor = false;
+        }
+        System.out.println("HotFolderWatcher: Stopped after " + converted.get() + " converted, "
+                + failed.get() + " failed");
+        return drained;
+    }
+
+    @Override
+    public void close() {
+        try {
+            stop(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public long getConvertedCount() {
+        return converted.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    private void watchLoop() {
+        scanInputDir();
+        try {
+            while (running) {
+                // block without a timeout while idle; wake for the next settle deadline otherwise
+                WatchKey key = pending.isEmpty()
+                        ? watchService.take()
+                        : watchService.poll(millisToNextDeadline(), TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            // events were lost; the directory listing is the source of truth
+                            scanInputDir();
+                        } else {
+                            track(inputDir.resolve((Path) event.context()));
+                        }
+                    }
+                    key.reset();
+                }
+                dispatchSettled();
+            }
+        } catch (ClosedWatchServiceException e) {
+            // stop() closed the service
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void scanInputDir() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(inputDir)) {
+            for (Path file : files) {
+                track(file);
+            }
+        } catch (IOException e) {
+            System.err.println("HotFolderWatcher: Failed to scan " + inputDir + ": " + e.getMessage());
+        }
+    }
+
+    private void track(Path file) {
+        if (isIgnored(file) || inFlight.contains(file)) {
+            return;
+        }
+        BasicFileAttributes attributes = readAttributes(file);
+        if (attributes == null || !attributes.isRegularFile()) {
+            pending.remove(file);
+            return;
+        }
+        long now = System.currentTimeMillis();
+        PendingFile known = pending.get(file);
+        if (known == null) {
+            pending.put(file, new PendingFile(attributes, now));
+        } else if (known.changed(attributes)) {
+            known.update(attributes, now);
+        }
+    }
+
+    private void dispatchSettled() throws InterruptedException {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<Path, PendingFile>> entries = pending.entrySet().iterator();
+        while (entries.hasNext() && running) {
+            Map.Entry<Path, PendingFile> entry = entries.next();
+            PendingFile file = entry.getValue();
+            if (now - file.stableSince < settleMillis) {
+                continue;
+            }
+            // events can lag the writer, so confirm with a fresh stat
+            BasicFileAttributes attributes = readAttributes(entry.getKey());
+            if (attributes == null) {
+                entries.remove();
+            } else if (file.changed(attributes)) {
+                file.update(attributes, now);
+            } else {
+                entries.remove();
+                dispatch(entry.getKey());
+            }
+        }
+    }
+
+    private void dispatch(Path file) throws InterruptedException {
+        // backpressure: the watcher waits here while maxInFlight conversions are running
+        permits.acquire();
+        ExecutorService workers = executor;
+        if (!running || workers == null) {
+            // stop() gave up waiting while the watcher was blocked above; the file is picked up on the next start
+            permits.release();
+            return;
+        }
+        inFlight.add(file);
+        try {
+            workers.execute(() -> {
+                boolean queued = false;
+                try {
+                    queued = convert(file);
+                } finally {
+                    if (!queued) {
+                        inFlight.remove(file);
+                    }
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(file);
+            permits.release();
+            System.err.println("HotFolderWatcher: Left " + file.getFileName() + " for the next start: "
+                    + e.getMessage());
+        }
+    }
+
+    /**
+     * @return true if the output was queued for saving; the input then stays
+     *         in flight until its group is saved
+     */
+    private boolean convert(Path file) {
+        String inputPath = file.toString();
+        ConversionResult result = processor != null
+                ? facade.convertAndProcess(inputPath, outputFormat, processor)
+                : facade.convertDocument(inputPath, outputFormat);
+
+        if (!result.isSuccess()) {
+            fail(file, result.getMessage());
+            if (result.getDocument() != null) {
+                result.getDocument().release();
+            }
+            return false;
+        }
+        Document output = result.getDocument();
+        Path target = ConversionFacade.claimOutputPath(outputDir.toString(), output.getFileName(),
+                candidate -> !Files.exists(candidate) && claimedOutputs.add(candidate));
+        save(new ConvertedFile(file, output, target));
+        return true;
+    }
+
+    /**
+     * Queues the output, and saves queued groups unless another worker is
+     * already doing so; that worker picks this output up in its next group.
+     */
+    private void save(ConvertedFile file) {
+        List<ConvertedFile> group;
+        synchronized (saveLock) {
+            unsaved.add(file);
+            if (saving) {
+                return;
+            }
+            saving = true;
+            group = takeUnsaved();
+        }
+        while (group != null) {
+            saveGroup(group);
+            synchronized (saveLock) {
+                group = unsaved.isEmpty() ? null : takeUnsaved();
+                saving = group != null;
+            }
+        }
+    }
+
+    private List<ConvertedFile> takeUnsaved() {
+        List<ConvertedFile> group = unsaved;
+        unsaved = new ArrayList<>();
+        return group;
+    }
+
+    private void saveGroup(List<ConvertedFile> group) {
+        List<Document> outputs = new ArrayList<>(group.size());
+        List<String> outputPaths = new ArrayList<>(group.size());
+        for (ConvertedFile file : group) {
+            outputs.add(file.output);
+            outputPaths.add(file.target.toString());
+        }
+        String saveFailure = null;
+        try {
+            facade.saveDocuments(outputs, outputPaths);
+        } catch (IOException | RuntimeException e) {
+            saveFailure = e.getMessage();
+        } finally {
+            // frees pooled buffers and spill files now rather than whenever GC gets to them
+            outputs.forEach(Document::release);
+        }
+        for (ConvertedFile file : group) {
+            claimedOutputs.remove(file.target);
+        }
+        for (ConvertedFile file : group) {
+            if (saveFailure != null) {
+                fail(file.input, saveFailure);
+            } else {
+                finish(file.input);
+            }
+            inFlight.remove(file.input);
+        }
+    }
+
+    private void finish(Path file) {
+        try {
+            if (archiveDir != null) {
+                Files.move(file, archiveDir.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.deleteIfExists(file);
+            }
+            converted.incrementAndGet();
+        } catch (IOException e) {
+            fail(file, e.getMessage());
+        }
+    }
+
+    private void fail(Path file, String reason) {
+        failed.incrementAndGet();
+        System.err.println("HotFolderWatcher: Failed to convert " + file.getFileName() + ": " + reason);
+        try {
+            Path target = failedDir.resolve(file.getFileName());
+            Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+            Files.writeString(failedDir.resolve(file.getFileName() + ".error"), String.valueOf(reason),
+                    StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.err.println("HotFolderWatcher: Could not move " + file.getFileName() + " to "
+                    + failedDir + ": " + e.getMessage());
+        }
+    }
+
+    private long millisToNextDeadline() {
+        long now = System.currentTimeMillis();
+        long next = Long.MAX_VALUE;
+        for (PendingFile file : pending.values()) {
+            next = Math.min(next, file.stableSince + settleMillis);
+        }
+        return Math.max(1, next - now);
+    }
+
+    private static boolean isIgnored(Path file) {
+        // hidden files and partial uploads are renamed into place when complete
+        String name = file.getFileName().toString();
+        return name.startsWith(".") || name.endsWith(".tmp") || name.endsWith(".part");
+    }
+
+    private static BasicFileAttributes readAttributes(Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static final class ConvertedFile {
+        final Path input;
+        final Document output;
+        final Path target;
+
+        ConvertedFile(Path input, Document output, Path target) {
+            this.input = input;
+            this.output = output;
+            this.target = target;
+        }
+    }
+
+    private static final class PendingFile {
+        private long size;
+        private long modified;
+        private long stableSince;
+
+        PendingFile(BasicFileAttributes attributes, long now) {
+            update(attributes, now);
+        }
+
+        boolean changed(BasicFileAttributes attributes) {
+            return attributes.size() != size || attributes.lastModifiedTime().toMillis() != modified;
+        }
+
+        void update(BasicFileAttributes attributes, long now) {
+            this.size = attributes.size();
+            this.modified = attributes.lastModifiedTime().toMillis();
+            this.stableSince = now;
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package journal;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only record of a batch's progress: one line per state change of an
+ * input file, so a batch that dies half-way can be resumed and skip the files
+ * that are already done. Opening a journal replays it; a torn last line from
+ * a crash is detected by its checksum and cut off.
+ *
+ * <p>Records are applied in memory right away and written by a background
+ * thread in batches, with one force per batch. A crash loses at most the last
+ * unwritten batch, and those files are simply converted again. Once
+ * superseded lines make up most of the file it is rewritten with one line per
+ * input.
+ */
+public class JobJournal implements AutoCloseable {
+
+    public enum State {
+        QUEUED, CONVERTED, SAVED, FAILED
+    }
+
+    private static final int BATCH_SIZE = 1024;
+    private static final long MIN_COMPACT_RECORDS = 4096;
+
+    private final Path file;
+    private final boolean durable;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+    private final Object writeLock = new Object();
+    private final Thread writerThread;
+
+    private FileChannel channel;
+    private long recordCount; // lines in the file, guarded by writeLock
+    private long appended;    // guarded by this
+    private long written;     // guarded by this
+    private IOException failure;
+    private volatile boolean running = true;
+
+    public JobJournal(Path file) throws IOException {
+        this(file, true);
+    }
+
+    public JobJournal(Path file, boolean durable) throws IOException {
+        this.file = file;
+        this.durable = durable;
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        long validLength = replay();
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (channel.size() > validLength) {
+            System.out.println("JobJournal: Dropping torn record at the end of " + file);
+            channel.truncate(validLength);
+        }
+        channel.position(validLength);
+
+        this.writerThread = new Thread(this::writeLoop, "job-journal-" + file.getFileName());
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    public void queued(String inputPath) {
+        record(State.QUEUED, inputPath, null);
+    }
+
+    public void converted(String inputPath) {
+        record(State.CONVERTED, inputPath, null);
+    }
+
+    public void saved(String inputPath, String outputPath) {
+        record(State.SAVED, inputPath, outputPath);
+    }
+
+    public void failed(String inputPath, String message) {
+        record(State.FAILED, inputPath, message);
+    }
+
+    /**
+     * @return the last recorded state, or null if the journal has never seen the input
+     */
+    public State getState(String inputPath) {
+        Entry entry = entries.get(inputPath);
+        return entry != null ? entry.state : null;
+    }
+
+    /**
+     * The output path for {@code SAVED}, the error message for {@code FAILED}.
+     */
+    public String getDetail(String inputPath) {
+        Entry entry = entries.get(inputPath);
+        return entry != null ? entry.detail : null;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Blocks until every record made before the call is written (and forced,
+     * if durable).
+     */
+    public void flush() throws IOException {
+        synchronized (this) {
+            long target = appended;
+            while (written < target && failure == null) {
+                if (!writerThread.isAlive()) {
+                    throw new IOException("Journal " + file + " is closed");
+                }
+                try {
+                    wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while flushing " + file);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Rewrites the file with one line per input.
+     */
+    public void compact() throws IOException {
+        flush();
+        synchronized (writeLock) {
+            rewrite();
+        }
+    }
+
+    private void record(State state, String inputPath, String detail) {
+        if (!running) {
+            throw new IllegalStateException("Journal " + file + " is closed");
+        }
+        entries.put(inputPath, new Entry(state, detail));
+        String line = encode(state, inputPath, detail);
+        synchronized (this) {
+            appended++;
+            queue.add(line);
+        }
+    }
+
+    private void writeLoop() {
+        List<String> batch = new ArrayList<>(BATCH_SIZE);
+        StringBuilder text = new StringBuilder(BATCH_SIZE * 64);
+        while (running || !queue.isEmpty()) {
+            try {
+                String first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, BATCH_SIZE - 1);
+
+                text.setLength(0);
+                for (String line : batch) {
+                    text.append(line);
+                }
+                synchronized (writeLock) {
+                    ByteBuffer bytes = StandardCharsets.UTF_8.encode(text.toString());
+                    while (bytes.hasRemaining()) {
+                        channel.write(bytes);
+                    }
+                    if (durable) {
+                        channel.force(false);
+                    }
+                    recordCount += batch.size();
+                    if (recordCount >= MIN_COMPACT_RECORDS && recordCount > 2L * entries.size()) {
+                        rewrite();
+                    }
+                }
+                markWritten(batch.size(), null);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (IOException e) {
+                System.err.println("JobJournal: Failed to write " + file + ": " + e.getMessage());
+                markWritten(batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private synchronized void markWritten(int count, IOException error) {
+        written += count;
+        if (error != null && failure == null) {
+            failure = error;
+        }
+        notifyAll();
+    }
+
+    // caller holds writeLock
+    private void rewrite() throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".compact");
+        StringBuilder text = new StringBuilder(entries.size() * 64);
+        int lines = 0;
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            text.append(encode(entry.getValue().state, entry.getKey(), entry.getValue().detail));
+            lines++;
+        }
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer bytes = StandardCharsets.UTF_8.encode(text.toString());
+            while (bytes.hasRemaining()) {
+                out.write(bytes);
+            }
+            out.force(true);
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        channel.close();
+        channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        recordCount = lines;
+    }
+
+    /**
+     * Loads the entries and returns the length of the file up to the last
+     * intact record.
+     */
+    private long replay() throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        long offset = 0;
+        ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                if (!apply(line.toString(StandardCharsets.UTF_8))) {
+                    break;
+                }
+                offset += line.size() + 1;
+                recordCount++;
+                line.reset();
+            }
+        }
+        return offset;
+    }
+
+    private boolean apply(String line) {
+        int checksumStart = line.lastIndexOf('\t');
+        if (checksumStart < 0) {
+            return false;
+        }
+        String body = line.substring(0, checksumStart);
+        if (!line.substring(checksumStart + 1).equals(checksum(body))) {
+            return false;
+        }
+        String[] fields = body.split("\t", -1);
+        if (fields.length != 3) {
+            return false;
+        }
+        State state;
+        try {
+            state = State.valueOf(fields[0]);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        String detail = fields[2].isEmpty() ? null : unescape(fields[2]);
+        entries.put(unescape(fields[1]), new Entry(state, detail));
+        return true;
+    }
+
+    private static String encode(State state, String inputPath, String detail) {
+        String body = state.name() + '\t' + escape(inputPath) + '\t' + (detail != null ? escape(detail) : "");
+        return body + '\t' + checksum(body) + '\n';
+    }
+
+    private static String checksum(String body) {
+        CRC32 crc = new CRC32();
+        crc.update(body.getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc.getValue());
+    }
+
+    private static String escape(String value) {
+        if (value.indexOf('\\') < 0 && value.indexOf('\t') < 0 && value.indexOf('\n') < 0
+                && value.indexOf('\r') < 0) {
+            return value;
+        }
+        StringBuilder escaped = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\': escaped.append("\\\\"); break;
+                case '\t': escaped.append("\\t"); break;
+                case '\n': escaped.append("\\n"); break;
+                case '\r': escaped.append("\\r"); break;
+                default: escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder plain = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                plain.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                plain.append(c);
+            }
+        }
+        return plain.toString();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (writeLock) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("JobJournal: Failed to close " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final State state;
+        private final String detail;
+
+        Entry(State state, String detail) {
+            this.state = state;
+            this.detail = detail;
+        }
+    }
+}
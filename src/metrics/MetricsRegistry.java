@@ -0,0 +1,147 @@
+package metrics;
+
+import util.WorkerPools;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Per-stage metrics keyed by category and name. Stages are created on first
+ * use; JMX registration and the periodic text snapshot are opt-in.
+ */
+public class MetricsRegistry implements MetricsRegistryMBean {
+
+    public static final String STRATEGY = "strategy";
+    public static final String DECORATOR = "decorator";
+    public static final String IO = "io";
+    public static final String QUEUE = "queue";
+
+    private static final String DOMAIN = "sdp.conversion";
+    private static final MetricsRegistry SHARED = new MetricsRegistry();
+
+    private final Map<String, StageMetrics> stages = new ConcurrentHashMap<>();
+    private volatile MBeanServer mbeanServer;
+    private ScheduledExecutorService reporter;
+
+    public static MetricsRegistry shared() {
+        return SHARED;
+    }
+
+    public StageMetrics stage(String category, String name) {
+        StageMetrics metrics = stages.get(category + '/' + name);
+        if (metrics != null) {
+            return metrics;
+        }
+        return stages.computeIfAbsent(category + '/' + name, key -> {
+            StageMetrics created = new StageMetrics(category, name);
+            register(created);
+            return created;
+        });
+    }
+
+    public List<StageMetrics> getStages() {
+        List<StageMetrics> sorted = new ArrayList<>(stages.values());
+        sorted.sort(Comparator.comparing(StageMetrics::getCategory).thenComparing(StageMetrics::getName));
+        return sorted;
+    }
+
+    @Override
+    public int getStageCount() {
+        return stages.size();
+    }
+
+    @Override
+    public void reset() {
+        for (StageMetrics metrics : stages.values()) {
+            metrics.reset();
+        }
+    }
+
+    /**
+     * Registers this registry and every current and future stage with the
+     * platform MBean server.
+     */
+    public synchronized void enableJmx() {
+        if (mbeanServer != null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName registryName = new ObjectName(DOMAIN + ":type=Registry");
+            if (!server.isRegistered(registryName)) {
+                server.registerMBean(this, registryName);
+            }
+        } catch (JMException e) {
+            System.err.println("MetricsRegistry: JMX registration failed: " + e.getMessage());
+            return;
+        }
+        mbeanServer = server;
+        for (StageMetrics metrics : stages.values()) {
+            register(metrics);
+        }
+    }
+
+    /**
+     * Hands a text snapshot to the sink every period, from a daemon thread.
+     */
+    public synchronized void startReporter(long period, TimeUnit unit, Consumer<String> sink) {
+        stopReporter();
+        reporter = Executors.newSingleThreadScheduledExecutor(WorkerPools.daemonThreadFactory("metrics-reporter"));
+        reporter.scheduleAtFixedRate(() -> sink.accept(getSnapshot()), period, period, unit);
+    }
+
+    public synchronized void stopReporter() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+    }
+
+    @Override
+    public String getSnapshot() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%-10s %-36s %8s %6s %10s %10s %10s %10s %10s %12s %12s%n",
+                "Category", "Stage", "Count", "Err%", "p50 us", "p99 us", "p999 us", "max us", "mean us",
+                "Bytes in", "Bytes out"));
+        for (StageMetrics metrics : getStages()) {
+            text.append(String.format("%-10s %-36s %8d %6.2f %10.1f %10.1f %10.1f %10.1f %10.1f %12d %12d%n",
+                    metrics.getCategory(), metrics.getName(), metrics.getCount(), 100 * metrics.getErrorRate(),
+                    micros(metrics.getP50Nanos()), micros(metrics.getP99Nanos()), micros(metrics.getP999Nanos()),
+                    micros(metrics.getMaxNanos()), metrics.getMeanNanos() / 1000.0,
+                    metrics.getBytesIn(), metrics.getBytesOut()));
+        }
+        return text.toString();
+    }
+
+    private void register(StageMetrics metrics) {
+        MBeanServer server = mbeanServer;
+        if (server == null) {
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName(DOMAIN + ":type=Stage,category=" + metrics.getCategory()
+                    + ",name=" + ObjectName.quote(metrics.getName()));
+            if (!server.isRegistered(name)) {
+                server.registerMBean(metrics, name);
+            }
+        } catch (JMException e) {
+            System.err.println("MetricsRegistry: JMX registration failed for " + metrics.getName()
+                    + ": " + e.getMessage());
+        }
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000.0;
+    }
+}
@@ -0,0 +1,13 @@
+package metrics;
+
+/**
+ * JMX view of the registry as a whole.
+ */
+public interface MetricsRegistryMBean {
+
+    int getStageCount();
+
+    String getSnapshot();
+
+    void reset();
+}
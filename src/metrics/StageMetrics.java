@@ -0,0 +1,106 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency, throughput and error counters for one stage, e.g. a strategy,
+ * a decorator or file load/save. Recording never takes a lock.
+ */
+public class StageMetrics implements StageMetricsMBean {
+
+    private final String category;
+    private final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    StageMetrics(String category, String name) {
+        this.category = category;
+        this.name = name;
+    }
+
+    public void record(long nanos, long inputBytes, long outputBytes) {
+        latency.record(nanos);
+        bytesIn.add(inputBytes);
+        bytesOut.add(outputBytes);
+    }
+
+    public void recordError() {
+        errors.increment();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    @Override
+    public String getCategory() {
+        return category;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getCount() {
+        return latency.getCount();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    @Override
+    public double getErrorRate() {
+        long failed = errors.sum();
+        long attempts = latency.getCount() + failed;
+        return attempts == 0 ? 0.0 : (double) failed / attempts;
+    }
+
+    @Override
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    @Override
+    public double getMeanNanos() {
+        return latency.getMean();
+    }
+
+    @Override
+    public long getP50Nanos() {
+        return latency.getPercentile(50);
+    }
+
+    @Override
+    public long getP99Nanos() {
+        return latency.getPercentile(99);
+    }
+
+    @Override
+    public long getP999Nanos() {
+        return latency.getPercentile(99.9);
+    }
+
+    @Override
+    public long getMaxNanos() {
+        return latency.getMax();
+    }
+
+    @Override
+    public void reset() {
+        latency.reset();
+        bytesIn.reset();
+        bytesOut.reset();
+        errors.reset();
+    }
+}
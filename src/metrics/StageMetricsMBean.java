@@ -0,0 +1,33 @@
+package metrics;
+
+/**
+ * JMX view of one instrumented stage.
+ */
+public interface StageMetricsMBean {
+
+    String getCategory();
+
+    String getName();
+
+    long getCount();
+
+    long getErrorCount();
+
+    double getErrorRate();
+
+    long getBytesIn();
+
+    long getBytesOut();
+
+    double getMeanNanos();
+
+    long getP50Nanos();
+
+    long getP99Nanos();
+
+    long getP999Nanos();
+
+    long getMaxNanos();
+
+    void reset();
+}
@@ -0,0 +1,51 @@
+package model;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Content held in a byte array. The array is never handed out, so holders of
+ * the same instance cannot change each other's bytes; {@link #toByteArray()}
+ * returns a copy and {@link #asReadOnlyBuffer()} a read-only view.
+ */
+public class ByteArrayContent implements ContentSource {
+
+    private static final long serialVersionUID = 1L;
+
+    private final byte[] data;
+
+    public ByteArrayContent(byte[] data) {
+        this.data = data != null ? data : new byte[0];
+    }
+
+    @Override
+    public long size() {
+        return data.length;
+    }
+
+    @Override
+    public InputStream openStream() {
+        return new ByteArrayInputStream(data);
+    }
+
+    @Override
+    public long transferTo(OutputStream out) throws IOException {
+        out.write(data);
+        return data.length;
+    }
+
+    /**
+     * View of the content without copying.
+     */
+    public ByteBuffer asReadOnlyBuffer() {
+        return ByteBuffer.wrap(data).asReadOnlyBuffer();
+    }
+
+    @Override
+    public byte[] toByteArray() {
+        return data.clone();
+    }
+}
@@ -0,0 +1,130 @@
+package model;
+
+import util.BufferPool;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Output sink for pipeline stages. Bytes are kept in memory up to a threshold
+ * and spilled to a temporary file beyond it, so the heap used by one job stays
+ * bounded regardless of document size. The in-memory buffer is borrowed from
+ * {@link BufferPool} and handed over, uncopied, to the resulting content.
+ */
+public class ContentBuffer extends OutputStream {
+
+    public static final int DEFAULT_SPILL_THRESHOLD = 8 * 1024 * 1024;
+
+    private final int spillThreshold;
+    private final BufferPool pool = BufferPool.shared();
+    private final byte[] single = new byte[1];
+    private byte[] buffer;
+    private int count;
+    private Path spillFile;
+    private OutputStream spillStream;
+    private long size;
+    private boolean closed;
+
+    public ContentBuffer() {
+        this(DEFAULT_SPILL_THRESHOLD);
+    }
+
+    public ContentBuffer(int spillThreshold) {
+        this.spillThreshold = Math.max(1024, spillThreshold);
+        this.buffer = pool.borrowHeap(Math.min(this.spillThreshold, 8192));
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        single[0] = (byte) b;
+        write(single, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if (spillStream == null && count + len > spillThreshold) {
+            spill();
+        }
+        if (spillStream != null) {
+            spillStream.write(b, off, len);
+        } else {
+            if (count + len > buffer.length) {
+                byte[] grown = pool.borrowHeap(Math.min(spillThreshold, Math.max(buffer.length * 2, count + len)));
+                System.arraycopy(buffer, 0, grown, 0, count);
+                pool.release(buffer);
+                buffer = grown;
+            }
+            System.arraycopy(b, off, buffer, count, len);
+            count += len;
+        }
+        size += len;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean isSpilled() {
+        return spillFile != null;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (spillStream != null) {
+            spillStream.flush();
+        }
+    }
+
+    /**
+     * Closes the buffer; bytes not handed over by {@link #toContentSource()}
+     * are discarded.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            if (spillStream != null) {
+                spillStream.close();
+                Files.deleteIfExists(spillFile);
+            }
+        }
+        if (buffer != null) {
+            pool.release(buffer);
+            buffer = null;
+        }
+    }
+
+    /**
+     * Closes the buffer and hands its bytes over as a content source.
+     */
+    public ContentSource toContentSource() throws IOException {
+        ensureOpen();
+        closed = true;
+        if (spillStream != null) {
+            spillStream.close();
+            return new FileContent(spillFile, size, true);
+        }
+        ContentSource content = new PooledContent(buffer, count, pool);
+        buffer = null;
+        return content;
+    }
+
+    private void spill() throws IOException {
+        spillFile = Files.createTempFile("sdp-content-", ".tmp");
+        spillStream = new BufferedOutputStream(Files.newOutputStream(spillFile), ContentSource.TRANSFER_BUFFER_SIZE);
+        spillStream.write(buffer, 0, count);
+        pool.release(buffer);
+        buffer = null;
+        count = 0;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("ContentBuffer is closed");
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Re-readable source of document bytes. Implementations open their backing
+ * storage lazily, so a document can be routed and converted without its
+ * payload ever being held on the heap.
+ */
+public interface ContentSource extends Serializable {
+
+    int TRANSFER_BUFFER_SIZE = 64 * 1024;
+
+    long size();
+
+    InputStream openStream() throws IOException;
+
+    default ReadableByteChannel openChannel() throws IOException {
+        return Channels.newChannel(openStream());
+    }
+
+    default long transferTo(OutputStream out) throws IOException {
+        try (InputStream in = openStream()) {
+            return in.transferTo(out);
+        }
+    }
+
+    /**
+     * Reads the whole content into a byte array. Only meant for small payloads
+     * and legacy callers of {@link Document#getContent()}.
+     */
+    default byte[] toByteArray() throws IOException {
+        if (size() > Integer.MAX_VALUE - 8) {
+            throw new IOException("Content too large to materialize: " + size() + " bytes");
+        }
+        try (InputStream in = openStream()) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * Frees any backing storage owned by this source, e.g. spill files.
+     */
+    default void release() {
+    }
+}
@@ -6,6 +6,7 @@ public class ConversionResult {
     private boolean success;
     private String message;
     private long processingTime;
+    private String inputPath;
 
     public ConversionResult(Document document, boolean success, String message) {
         this.document = document;
@@ -50,6 +51,18 @@ public class ConversionResult {
         this.processingTime = processingTime;
     }
 
+    /**
+     * The file this result was converted from; set by the async and streaming
+     * batch APIs, whose results do not arrive in input order.
+     */
+    public String getInputPath() {
+        return inputPath;
+    }
+
+    public void setInputPath(String inputPath) {
+        this.inputPath = inputPath;
+    }
+
     @Override
     public String toString() {
         return "ConversionResult{" +
@@ -1,39 +1,84 @@
 package model;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
-import java.util.HashMap;
+import java.io.UncheckedIOException;
 import java.util.Map;
 
 public class Document implements Serializable {
-    private byte[] content;
+    private ContentSource content;
     private String format;
     private String fileName;
     private long fileSize;
-    private Map<String, String> metadata;
+    private Metadata metadata;
 
     public Document(byte[] content, String format, String fileName) {
-        this.content = content;
-        this.format = format;
-        this.fileName = fileName;
-        this.fileSize = content != null ? content.length : 0;
-        this.metadata = new HashMap<>();
+        this(new ByteArrayContent(content), format, fileName);
     }
 
     public Document(byte[] content, String format) {
         this(content, format, "untitled." + format.toLowerCase());
     }
 
+    public Document(ContentSource content, String format, String fileName) {
+        this.content = content;
+        this.format = format;
+        this.fileName = fileName;
+        this.fileSize = content != null ? content.size() : 0;
+        this.metadata = new Metadata();
+    }
+
+    /**
+     * Replaces the metadata with a copy of the given entries. Metadata taken
+     * from another document is shared until either side changes it.
+     */
     public void setMetadata(Map<String, String> metadata) {
-        this.metadata = metadata;
+        this.metadata = Metadata.copyOf(metadata);
     }
 
+    /**
+     * Returns the whole payload as an array. Large file-backed documents are
+     * read into memory on every call, so pipeline code should prefer
+     * {@link #openContentStream()} or {@link #getContentSource()}.
+     */
     public byte[] getContent() {
-        return content;
+        if (content == null) {
+            return null;
+        }
+        try {
+            return content.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read content of " + fileName, e);
+        }
     }
 
     public void setContent(byte[] content) {
+        setContentSource(content != null ? new ByteArrayContent(content) : null);
+    }
+
+    public ContentSource getContentSource() {
+        return content;
+    }
+
+    public void setContentSource(ContentSource content) {
+        if (this.content != null && this.content != content) {
+            this.content.release();
+        }
         this.content = content;
-        this.fileSize = content != null ? content.length : 0;
+        this.fileSize = content != null ? content.size() : 0;
+    }
+
+    /**
+     * Frees the storage behind the content (pooled buffers, spill files);
+     * the document is empty afterwards.
+     */
+    public void release() {
+        setContentSource(null);
+    }
+
+    public InputStream openContentStream() throws IOException {
+        return content != null ? content.openStream() : InputStream.nullInputStream();
     }
 
     public String getFormat() {
@@ -64,6 +109,10 @@ public class Document implements Serializable {
         this.metadata.put(key, value);
     }
 
+    public void addMetadata(String key, long value) {
+        this.metadata.put(key, Metadata.number(value));
+    }
+
     public String getMetadata(String key) {
         return this.metadata.get(key);
     }
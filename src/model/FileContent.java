@@ -0,0 +1,143 @@
+package model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.Cleaner;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Content backed by a file on disk. Nothing is opened until a stream or channel
+ * is requested; files above {@link #MMAP_THRESHOLD} are read through
+ * memory-mapped windows so the page cache, not the heap, holds the bytes.
+ */
+public final class FileContent implements ContentSource {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final long MMAP_THRESHOLD = 32L * 1024 * 1024;
+    static final long MAP_WINDOW_SIZE = 64L * 1024 * 1024;
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final String path;
+    private final long size;
+    private final boolean deleteOnRelease;
+    private transient Cleaner.Cleanable cleanable;
+
+    public FileContent(Path path) throws IOException {
+        this(path, Files.size(path), false);
+    }
+
+    FileContent(Path path, long size, boolean deleteOnRelease) {
+        this.path = path.toString();
+        this.size = size;
+        this.deleteOnRelease = deleteOnRelease;
+        if (deleteOnRelease) {
+            // spill files are removed even if nobody calls release()
+            String target = this.path;
+            this.cleanable = CLEANER.register(this, () -> deleteQuietly(target));
+        }
+    }
+
+    public Path getPath() {
+        return Paths.get(path);
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public InputStream openStream() throws IOException {
+        if (size >= MMAP_THRESHOLD) {
+            return new MappedInputStream(FileChannel.open(getPath(), StandardOpenOption.READ), size);
+        }
+        return Files.newInputStream(getPath());
+    }
+
+    @Override
+    public ReadableByteChannel openChannel() throws IOException {
+        return FileChannel.open(getPath(), StandardOpenOption.READ);
+    }
+
+    @Override
+    public void release() {
+        if (deleteOnRelease) {
+            if (cleanable != null) {
+                cleanable.clean();
+            } else {
+                deleteQuietly(path);
+            }
+        }
+    }
+
+    private static void deleteQuietly(String path) {
+        try {
+            Files.deleteIfExists(Paths.get(path));
+        } catch (IOException ignored) {
+            // best effort cleanup of a temporary file
+        }
+    }
+
+    private static final class MappedInputStream extends InputStream {
+
+        private final FileChannel channel;
+        private final long length;
+        private long windowStart;
+        private MappedByteBuffer window;
+
+        MappedInputStream(FileChannel channel, long length) {
+            this.channel = channel;
+            this.length = length;
+        }
+
+        private boolean ensureWindow() throws IOException {
+            if (window != null && window.hasRemaining()) {
+                return true;
+            }
+            long next = window == null ? 0 : windowStart + window.capacity();
+            if (next >= length) {
+                return false;
+            }
+            windowStart = next;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, next, Math.min(MAP_WINDOW_SIZE, length - next));
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return ensureWindow() ? window.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!ensureWindow()) {
+                return -1;
+            }
+            int count = Math.min(len, window.remaining());
+            window.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return window == null ? 0 : window.remaining();
+        }
+
+        @Override
+        public void close() throws IOException {
+            window = null;
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package model;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Document formats known to the pipeline. Format strings are normalized to
+ * these constants once, so routing can work on ordinals instead of string
+ * comparisons.
+ */
+public enum Format {
+    PDF,
+    DOCX,
+    DOC,
+    TXT,
+    PNG,
+    JPG,
+    JPEG,
+    UNKNOWN;
+
+    private static final Map<String, Format> BY_NAME = new HashMap<>();
+
+    static {
+        for (Format format : values()) {
+            BY_NAME.put(format.name(), format);
+            BY_NAME.put(format.name().toLowerCase(Locale.ROOT), format);
+        }
+    }
+
+    public static Format of(String name) {
+        if (name == null) {
+            return UNKNOWN;
+        }
+        Format format = BY_NAME.get(name);
+        if (format == null) {
+            format = BY_NAME.get(name.toUpperCase(Locale.ROOT));
+        }
+        return format != null ? format : UNKNOWN;
+    }
+
+    public boolean isImage() {
+        return this == PNG || this == JPG || this == JPEG;
+    }
+}
@@ -0,0 +1,319 @@
+package model;
+
+import util.BufferPool;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidObjectException;
+import java.io.ObjectStreamException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Content of known length that is still arriving, e.g. an upload with a
+ * {@code Content-Length}. One thread feeds it through {@link #receive};
+ * streams can be opened straight away and block until the bytes they need
+ * are in, so a document can be sniffed and converted while the rest is being
+ * received. Content up to the spill threshold is kept in a pooled array, the
+ * rest goes to a temporary file.
+ */
+public final class IncomingContent implements ContentSource {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long size;
+    private final transient BufferPool pool = BufferPool.shared();
+    private final transient ReentrantLock lock = new ReentrantLock();
+    private final transient Condition arrived = lock.newCondition();
+    private transient byte[] buffer;
+    private transient Path spillFile;
+
+    // guarded by lock
+    private transient long received;
+    private transient IOException failure;
+    private transient boolean receiving;
+    private transient boolean released;
+
+    public IncomingContent(long size, int spillThreshold) throws IOException {
+        this.size = size;
+        if (size <= Math.max(1024, spillThreshold)) {
+            this.buffer = pool.borrowHeap((int) size);
+        } else {
+            this.spillFile = Files.createTempFile("sdp-upload-", ".tmp");
+        }
+    }
+
+    /**
+     * Reads the rest of the content from {@code in}.
+     *
+     * @see #receive(InputStream, long)
+     */
+    public void receive(InputStream in) {
+        receive(in, size);
+    }
+
+    /**
+     * Reads from {@code in} until {@code count} bytes (at most {@link #size()})
+     * have arrived, so a caller can take the first bytes, start a conversion
+     * and then receive the rest. A stream that fails or ends early fails every
+     * reader of this content; receiving stops early once the content is
+     * released. Only one thread may receive at a time.
+     */
+    public void receive(InputStream in, long count) {
+        long target = Math.min(count, size);
+        long from;
+        lock.lock();
+        try {
+            if (released || failure != null) {
+                return;
+            }
+            receiving = true;
+            from = received;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            if (buffer != null) {
+                receiveInMemory(in, (int) from, target);
+            } else {
+                receiveToFile(in, from, target);
+            }
+        } catch (IOException e) {
+            fail(e);
+        } finally {
+            lock.lock();
+            try {
+                receiving = false;
+                if (released) {
+                    free();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Waits until every byte has arrived.
+     *
+     * @throws IOException if the upload failed or the content was released
+     */
+    public void awaitReceived() throws IOException {
+        lock.lock();
+        try {
+            while (received < size) {
+                ensureReadable();
+                arrived.awaitUninterruptibly();
+            }
+            ensureReadable();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public InputStream openStream() throws IOException {
+        lock.lock();
+        try {
+            ensureReadable();
+        } finally {
+            lock.unlock();
+        }
+        return new Reader();
+    }
+
+    @Override
+    public void release() {
+        lock.lock();
+        try {
+            if (released) {
+                return;
+            }
+            released = true;
+            arrived.signalAll();
+            // the receiving thread may still be writing into the buffer
+            if (!receiving) {
+                free();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Serializes as a plain byte array once the upload is complete.
+     */
+    private Object writeReplace() throws ObjectStreamException {
+        try {
+            awaitReceived();
+            return new ByteArrayContent(toByteArray());
+        } catch (IOException e) {
+            throw new InvalidObjectException("Content is not available: " + e.getMessage());
+        }
+    }
+
+    private void receiveInMemory(InputStream in, int from, long target) throws IOException {
+        int count = from;
+        while (count < target) {
+            int read = in.read(buffer, count, (int) Math.min(target - count, TRANSFER_BUFFER_SIZE));
+            if (read < 0) {
+                throw new IOException("Upload ended after " + count + " of " + size + " bytes");
+            }
+            count += read;
+            if (!advance(read)) {
+                return;
+            }
+        }
+    }
+
+    private void receiveToFile(InputStream in, long from, long target) throws IOException {
+        byte[] chunk = pool.borrowHeap(TRANSFER_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(spillFile, StandardOpenOption.WRITE)) {
+            long count = from;
+            while (count < target) {
+                int read = in.read(chunk, 0, (int) Math.min(target - count, chunk.length));
+                if (read < 0) {
+                    throw new IOException("Upload ended after " + count + " of " + size + " bytes");
+                }
+                ByteBuffer source = ByteBuffer.wrap(chunk, 0, read);
+                long position = count;
+                while (source.hasRemaining()) {
+                    position += channel.write(source, position);
+                }
+                count += read;
+                if (!advance(read)) {
+                    return;
+                }
+            }
+        } finally {
+            pool.release(chunk);
+        }
+    }
+
+    /**
+     * @return false once the content was released and receiving can stop
+     */
+    private boolean advance(int count) {
+        lock.lock();
+        try {
+            received += count;
+            arrived.signalAll();
+            return !released;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void fail(IOException e) {
+        lock.lock();
+        try {
+            failure = e;
+            arrived.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void free() {
+        if (buffer != null) {
+            pool.release(buffer);
+            buffer = null;
+        }
+        if (spillFile != null) {
+            try {
+                Files.deleteIfExists(spillFile);
+            } catch (IOException ignored) {
+                // best effort cleanup of a temporary file
+            }
+        }
+    }
+
+    private void ensureReadable() throws IOException {
+        if (released) {
+            throw new IOException("Content was already released");
+        }
+        if (failure != null) {
+            throw new IOException("Upload failed: " + failure.getMessage(), failure);
+        }
+    }
+
+    /**
+     * Reads from the start of the content, waiting for bytes that have not
+     * arrived yet.
+     */
+    private final class Reader extends InputStream {
+
+        private final byte[] single = new byte[1];
+        private long position;
+        private FileChannel channel;
+
+        @Override
+        public int read() throws IOException {
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= size) {
+                return -1;
+            }
+            int count;
+            lock.lock();
+            try {
+                while (received <= position) {
+                    ensureReadable();
+                    arrived.awaitUninterruptibly();
+                }
+                ensureReadable();
+                count = (int) Math.min(len, received - position);
+                if (buffer != null) {
+                    System.arraycopy(buffer, (int) position, b, off, count);
+                    position += count;
+                    return count;
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (channel == null) {
+                channel = FileChannel.open(spillFile, StandardOpenOption.READ);
+            }
+            count = channel.read(ByteBuffer.wrap(b, off, count), position);
+            if (count < 0) {
+                throw new IOException("Upload file is shorter than the bytes received");
+            }
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            lock.lock();
+            try {
+                return (int) Math.min(Integer.MAX_VALUE, received - position);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package model;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Compact metadata for a {@link Document}. Keys written by the built-in
+ * strategies and decorators own a bit in a 64-bit mask, and their values are
+ * packed into one array in slot order; any other key goes to a fallback map.
+ *
+ * <p>{@link #copy()} is O(1): both maps share their storage until one of them
+ * is written to. Entries can be removed through the views, but not changed;
+ * use {@link #put} for that.
+ */
+public final class Metadata extends AbstractMap<String, String> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // at most 64 entries, one bit each
+    private static final String[] WELL_KNOWN_KEYS = {
+            "conversion_strategy", "original_format", "library", "image_type", "conversion_path",
+            "base_processing", "watermark", "watermark_text",
+            "compression", "compression_format", "compression_level", "compression_parallel",
+            "compression_skipped_reason", "original_size", "compressed_size",
+            "encryption", "encryption_algorithm", "encryption_mode", "encryption_chunk_size", "encryption_parallel"
+    };
+    private static final Map<String, Integer> SLOTS = new HashMap<>();
+    private static final String[] EMPTY = {};
+    private static final int INITIAL_CAPACITY = 4;
+    private static final String[] SMALL_NUMBERS = new String[1024];
+
+    static {
+        for (int slot = 0; slot < WELL_KNOWN_KEYS.length; slot++) {
+            SLOTS.put(WELL_KNOWN_KEYS[slot], slot);
+        }
+        for (int i = 0; i < SMALL_NUMBERS.length; i++) {
+            SMALL_NUMBERS[i] = Integer.toString(i);
+        }
+    }
+
+    private long present;
+    // packed in slot order; may have spare room at the end
+    private String[] values = EMPTY;
+    private HashMap<String, String> extra;
+    // set on both sides of a copy(); the next write clones the storage first
+    private transient boolean shared;
+
+    public Metadata() {
+    }
+
+    /**
+     * Returns metadata holding the same entries; a {@code Metadata} source is
+     * shared copy-on-write rather than copied.
+     */
+    public static Metadata copyOf(Map<String, String> source) {
+        if (source instanceof Metadata) {
+            return ((Metadata) source).copy();
+        }
+        Metadata copy = new Metadata();
+        if (source != null) {
+            copy.putAll(source);
+        }
+        return copy;
+    }
+
+    /**
+     * String form of a number, without allocating for small values such as
+     * levels and counts.
+     */
+    public static String number(long value) {
+        return value >= 0 && value < SMALL_NUMBERS.length ? SMALL_NUMBERS[(int) value] : Long.toString(value);
+    }
+
+    public Metadata copy() {
+        Metadata copy = new Metadata();
+        copy.present = present;
+        copy.values = values;
+        copy.extra = extra;
+        if (values.length > 0 || extra != null) {
+            shared = true;
+            copy.shared = true;
+        }
+        return copy;
+    }
+
+    @Override
+    public int size() {
+        return Long.bitCount(present) + (extra != null ? extra.size() : 0);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return present == 0 && (extra == null || extra.isEmpty());
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        Integer slot = SLOTS.get(key);
+        if (slot != null) {
+            return (present & (1L << slot)) != 0;
+        }
+        return extra != null && extra.containsKey(key);
+    }
+
+    @Override
+    public String get(Object key) {
+        Integer slot = SLOTS.get(key);
+        if (slot != null) {
+            long bit = 1L << slot;
+            return (present & bit) != 0 ? values[index(bit)] : null;
+        }
+        return extra != null ? extra.get(key) : null;
+    }
+
+    @Override
+    public String put(String key, String value) {
+        unshare();
+        Integer slot = SLOTS.get(key);
+        if (slot == null) {
+            if (extra == null) {
+                extra = new HashMap<>(4);
+            }
+            return extra.put(key, value);
+        }
+
+        long bit = 1L << slot;
+        int index = index(bit);
+        if ((present & bit) != 0) {
+            String previous = values[index];
+            values[index] = value;
+            return previous;
+        }
+        int count = Long.bitCount(present);
+        if (count == values.length) {
+            int capacity = Math.min(WELL_KNOWN_KEYS.length, Math.max(INITIAL_CAPACITY, count * 2));
+            String[] grown = new String[capacity];
+            System.arraycopy(values, 0, grown, 0, count);
+            values = grown;
+        }
+        System.arraycopy(values, index, values, index + 1, count - index);
+        values[index] = value;
+        present |= bit;
+        return null;
+    }
+
+    @Override
+    public String remove(Object key) {
+        Integer slot = SLOTS.get(key);
+        if (slot == null) {
+            if (extra == null || !extra.containsKey(key)) {
+                return null;
+            }
+            unshare();
+            return extra.remove(key);
+        }
+
+        long bit = 1L << slot;
+        if ((present & bit) == 0) {
+            return null;
+        }
+        unshare();
+        int index = index(bit);
+        int count = Long.bitCount(present);
+        String previous = values[index];
+        System.arraycopy(values, index + 1, values, index, count - index - 1);
+        values[count - 1] = null;
+        present &= ~bit;
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        present = 0;
+        values = EMPTY;
+        extra = null;
+        shared = false;
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super String> action) {
+        long remaining = present;
+        for (int index = 0; remaining != 0; index++) {
+            int slot = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            action.accept(WELL_KNOWN_KEYS[slot], values[index]);
+        }
+        if (extra != null) {
+            extra.forEach(action);
+        }
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public int size() {
+                return Metadata.this.size();
+            }
+
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new EntryIterator();
+            }
+        };
+    }
+
+    private int index(long bit) {
+        return Long.bitCount(present & (bit - 1));
+    }
+
+    private void unshare() {
+        if (shared) {
+            values = values.length > 0 ? values.clone() : EMPTY;
+            extra = extra != null ? new HashMap<>(extra) : null;
+            shared = false;
+        }
+    }
+
+    /**
+     * Walks the well-known keys present when it was created, reading their
+     * values from the live array, then the fallback map. Removal goes through
+     * {@link Metadata#remove}, or the map's own iterator while that map is
+     * still the one this metadata owns.
+     */
+    private final class EntryIterator implements Iterator<Entry<String, String>> {
+        private final HashMap<String, String> extraMap = extra;
+        private final Iterator<Entry<String, String>> extras =
+                extraMap != null ? extraMap.entrySet().iterator() : null;
+        private long remaining = present;
+        private String lastKey;
+        private boolean lastFromExtras;
+
+        @Override
+        public boolean hasNext() {
+            return remaining != 0 || (extras != null && extras.hasNext());
+        }
+
+        @Override
+        public Entry<String, String> next() {
+            if (remaining != 0) {
+                int slot = Long.numberOfTrailingZeros(remaining);
+                remaining &= remaining - 1;
+                lastKey = WELL_KNOWN_KEYS[slot];
+                lastFromExtras = false;
+                return new SimpleImmutableEntry<>(lastKey, get(lastKey));
+            }
+            if (extras == null) {
+                throw new NoSuchElementException();
+            }
+            Entry<String, String> entry = extras.next();
+            lastKey = entry.getKey();
+            lastFromExtras = true;
+            return new SimpleImmutableEntry<>(lastKey, entry.getValue());
+        }
+
+        @Override
+        public void remove() {
+            if (lastKey == null) {
+                throw new IllegalStateException();
+            }
+            if (lastFromExtras && extra == extraMap && !shared) {
+                extras.remove();
+            } else {
+                // a shared or already replaced map is never written to again
+                Metadata.this.remove(lastKey);
+            }
+            lastKey = null;
+        }
+    }
+}
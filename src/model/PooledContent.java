@@ -0,0 +1,90 @@
+package model;
+
+import util.BufferPool;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidObjectException;
+import java.io.ObjectStreamException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * In-memory content backed by an array borrowed from {@link BufferPool}.
+ * The array goes back to the pool on {@link #release()}, which is why
+ * {@link #toByteArray()} always returns a copy.
+ */
+public final class PooledContent implements ContentSource {
+
+    private static final long serialVersionUID = 1L;
+
+    private final byte[] buffer;
+    private final int length;
+    private final transient BufferPool pool;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    PooledContent(byte[] buffer, int length, BufferPool pool) {
+        this.buffer = buffer;
+        this.length = length;
+        this.pool = pool;
+    }
+
+    @Override
+    public long size() {
+        return length;
+    }
+
+    @Override
+    public InputStream openStream() throws IOException {
+        ensureLive();
+        return new ByteArrayInputStream(buffer, 0, length);
+    }
+
+    @Override
+    public long transferTo(OutputStream out) throws IOException {
+        ensureLive();
+        out.write(buffer, 0, length);
+        return length;
+    }
+
+    /**
+     * View of the content without copying; only valid until {@link #release()}.
+     */
+    public ByteBuffer asReadOnlyBuffer() throws IOException {
+        ensureLive();
+        return ByteBuffer.wrap(buffer, 0, length).asReadOnlyBuffer();
+    }
+
+    @Override
+    public byte[] toByteArray() throws IOException {
+        ensureLive();
+        return Arrays.copyOf(buffer, length);
+    }
+
+    @Override
+    public void release() {
+        if (released.compareAndSet(false, true) && pool != null) {
+            pool.release(buffer);
+        }
+    }
+
+    /**
+     * Serializes as a plain byte array: the pooled buffer may be longer than
+     * the content and goes back to the pool on release.
+     */
+    private Object writeReplace() throws ObjectStreamException {
+        if (released.get()) {
+            throw new InvalidObjectException("Content was already released");
+        }
+        return new ByteArrayContent(Arrays.copyOf(buffer, length));
+    }
+
+    private void ensureLive() throws IOException {
+        if (released.get()) {
+            throw new IOException("Content was already released");
+        }
+    }
+}
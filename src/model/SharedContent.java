@@ -0,0 +1,102 @@
+package model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidObjectException;
+import java.io.ObjectStreamException;
+import java.io.OutputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Handle on content that several documents hold at once, e.g. the outputs of
+ * deduplicated batch inputs. Each document gets its own handle from
+ * {@link #retain()}; releasing a handle only drops that reference, and the
+ * backing content is released together with the last one.
+ */
+public final class SharedContent implements ContentSource {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient ContentSource content;
+    private final transient AtomicInteger references;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    public SharedContent(ContentSource content) {
+        this(content, new AtomicInteger(1));
+    }
+
+    private SharedContent(ContentSource content, AtomicInteger references) {
+        this.content = content;
+        this.references = references;
+    }
+
+    /**
+     * Another handle on the same content.
+     *
+     * @return the handle, or null if every handle has already been released
+     */
+    public SharedContent retain() {
+        int count;
+        do {
+            count = references.get();
+            if (count == 0) {
+                return null;
+            }
+        } while (!references.compareAndSet(count, count + 1));
+        return new SharedContent(content, references);
+    }
+
+    @Override
+    public long size() {
+        return content.size();
+    }
+
+    @Override
+    public InputStream openStream() throws IOException {
+        ensureLive();
+        return content.openStream();
+    }
+
+    @Override
+    public ReadableByteChannel openChannel() throws IOException {
+        ensureLive();
+        return content.openChannel();
+    }
+
+    @Override
+    public long transferTo(OutputStream out) throws IOException {
+        ensureLive();
+        return content.transferTo(out);
+    }
+
+    @Override
+    public byte[] toByteArray() throws IOException {
+        ensureLive();
+        return content.toByteArray();
+    }
+
+    @Override
+    public void release() {
+        if (released.compareAndSet(false, true) && references.decrementAndGet() == 0) {
+            content.release();
+        }
+    }
+
+    /**
+     * Serializes as the backing content; a copy read back is not shared.
+     */
+    private Object writeReplace() throws ObjectStreamException {
+        if (released.get()) {
+            throw new InvalidObjectException("Content was already released");
+        }
+        return content;
+    }
+
+    private void ensureLive() throws IOException {
+        if (released.get()) {
+            throw new IOException("Content was already released");
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package observer;
+
+import util.BoundedRingBuffer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Delivers progress events to observers on a dedicated thread, so the
+ * converting threads only pay for an enqueue. When the dispatcher falls
+ * behind, intermediate events of the same job that are already superseded by
+ * a newer queued event are coalesced away.
+ */
+class AsyncDispatcher implements Runnable {
+
+    private static final int DRAIN_BATCH = 256;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final ConversionSubject subject;
+    private final BoundedRingBuffer<ProgressEvent> buffer;
+    private final OverflowPolicy policy;
+    private final int sampleRate;
+    private final Thread thread;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong settled = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong overflowCounter = new AtomicLong();
+
+    private volatile boolean running = true;
+    private volatile boolean parked;
+
+    AsyncDispatcher(ConversionSubject subject, int capacity, OverflowPolicy policy, int sampleRate) {
+        this.subject = subject;
+        this.buffer = new BoundedRingBuffer<>(capacity);
+        this.policy = policy;
+        this.sampleRate = Math.max(1, sampleRate);
+        this.thread = new Thread(this, "observer-dispatcher");
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    void publish(Object job, String message, int progress) {
+        ProgressEvent event = new ProgressEvent(message, progress, job);
+        published.incrementAndGet();
+
+        if (!buffer.offer(event)) {
+            handleOverflow(event);
+        }
+        if (parked) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void handleOverflow(ProgressEvent event) {
+        switch (policy) {
+            case BLOCK:
+                if (Thread.currentThread() == thread) {
+                    // published from an observer: waiting for this thread to drain would never end
+                    deliver(event);
+                    settled.incrementAndGet();
+                    return;
+                }
+                while (!buffer.offer(event)) {
+                    if (!running) {
+                        discard();
+                        return;
+                    }
+                    LockSupport.unpark(thread);
+                    LockSupport.parkNanos(50_000);
+                }
+                return;
+            case SAMPLE:
+                boolean keep = !event.isIntermediate() || overflowCounter.incrementAndGet() % sampleRate == 0;
+                if (!keep) {
+                    discard();
+                    return;
+                }
+                evictUntilOffered(event);
+                return;
+            case DROP_OLDEST:
+            default:
+                evictUntilOffered(event);
+        }
+    }
+
+    private void evictUntilOffered(ProgressEvent event) {
+        while (!buffer.offer(event)) {
+            if (buffer.poll() != null) {
+                discard();
+            }
+        }
+    }
+
+    private void discard() {
+        dropped.incrementAndGet();
+        settled.incrementAndGet();
+    }
+
+    @Override
+    public void run() {
+        List<ProgressEvent> batch = new ArrayList<>(DRAIN_BATCH);
+        Set<Object> newerJobs = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        while (running || !buffer.isEmpty()) {
+            ProgressEvent event;
+            while (batch.size() < DRAIN_BATCH && (event = buffer.poll()) != null) {
+                batch.add(event);
+            }
+            if (batch.isEmpty()) {
+                parked = true;
+                if (buffer.isEmpty() && running) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                parked = false;
+                continue;
+            }
+
+            // walk backwards: an intermediate event is redundant if the same job has a newer one queued
+            boolean[] skip = new boolean[batch.size()];
+            newerJobs.clear();
+            for (int i = batch.size() - 1; i >= 0; i--) {
+                ProgressEvent candidate = batch.get(i);
+                if (candidate.jobKey != null && !newerJobs.add(candidate.jobKey) && candidate.isIntermediate()) {
+                    skip[i] = true;
+                }
+            }
+
+            for (int i = 0; i < batch.size(); i++) {
+                if (skip[i]) {
+                    coalesced.incrementAndGet();
+                } else {
+                    deliver(batch.get(i));
+                }
+                settled.incrementAndGet();
+            }
+            batch.clear();
+        }
+    }
+
+    private void deliver(ProgressEvent event) {
+        for (Observer observer : subject.observers()) {
+            try {
+                observer.update(event.message, event.progress);
+            } catch (RuntimeException e) {
+                // one failing observer must not stop delivery to the others
+                System.err.println("AsyncDispatcher: Observer " + observer.getClass().getSimpleName()
+                        + " failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Waits until every event published so far has been delivered, coalesced or dropped.
+     */
+    boolean flush(long timeout, TimeUnit unit) {
+        long target = published.get();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (settled.get() < target) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            LockSupport.unpark(thread);
+            LockSupport.parkNanos(100_000);
+        }
+        return true;
+    }
+
+    void shutdown(long timeout, TimeUnit unit) {
+        flush(timeout, unit);
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(unit.toMillis(timeout));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    long getDroppedCount() {
+        return dropped.get();
+    }
+
+    long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    int getQueuedCount() {
+        return buffer.size();
+    }
+}
@@ -0,0 +1,153 @@
+package observer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes log entries to a file from a background thread. Entries are queued
+ * raw, formatted and written in batches with one flush per batch, and the
+ * file is rotated ({@code log -> log.1 -> log.2 ...}) once it passes a size limit.
+ * When the queue is full new entries are dropped and counted rather than
+ * slowing down the caller.
+ */
+public class AsyncFileAppender implements AutoCloseable {
+
+    public static final long DEFAULT_MAX_FILE_BYTES = 10L * 1024 * 1024;
+    public static final int DEFAULT_MAX_FILES = 5;
+    private static final int QUEUE_CAPACITY = 16 * 1024;
+    private static final int BATCH_SIZE = 1024;
+
+    private final Path file;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private final LogFormat format;
+    private final BlockingQueue<LogEntry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writerThread;
+    private final AtomicLong dropped = new AtomicLong();
+
+    private Writer writer;
+    private long currentSize;
+    private volatile boolean running = true;
+
+    public AsyncFileAppender(Path file) throws IOException {
+        this(file, DEFAULT_MAX_FILE_BYTES, DEFAULT_MAX_FILES, DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+    }
+
+    public AsyncFileAppender(Path file, long maxFileBytes, int maxFiles, DateTimeFormatter formatter)
+            throws IOException {
+        this.file = file;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = Math.max(1, maxFiles);
+        this.format = new LogFormat(formatter);
+        openWriter();
+
+        this.writerThread = new Thread(this::writeLoop, "log-appender-" + file.getFileName());
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    void append(LogEntry entry) {
+        if (!running || !queue.offer(entry)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private void writeLoop() {
+        List<LogEntry> batch = new ArrayList<>(BATCH_SIZE);
+        StringBuilder line = new StringBuilder(256);
+        while (running || !queue.isEmpty()) {
+            try {
+                LogEntry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, BATCH_SIZE - 1);
+
+                for (LogEntry entry : batch) {
+                    line.setLength(0);
+                    format.appendTo(line, entry.timestampMillis, entry.progress, entry.message);
+                    line.append(System.lineSeparator());
+                    writer.append(line);
+                    // ASCII-dominated log lines: char count is a close enough size estimate
+                    currentSize += line.length();
+                    if (currentSize >= maxFileBytes) {
+                        rotate();
+                    }
+                }
+                writer.flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (IOException e) {
+                dropped.addAndGet(batch.size());
+                System.err.println("AsyncFileAppender: Failed to write " + file + ": " + e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+        closeWriter();
+    }
+
+    private void rotate() throws IOException {
+        writer.close();
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            Path source = i == 1 ? file : rotatedPath(i - 1);
+            if (Files.exists(source)) {
+                Files.move(source, rotatedPath(i), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (maxFiles == 1) {
+            Files.deleteIfExists(file);
+        }
+        openWriter();
+    }
+
+    private Path rotatedPath(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+
+    private void openWriter() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        currentSize = Files.size(file);
+    }
+
+    private void closeWriter() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            System.err.println("AsyncFileAppender: Failed to close " + file + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
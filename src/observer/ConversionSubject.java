@@ -1,22 +1,25 @@
 package observer;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 public class ConversionSubject {
     
     private List<Observer> observers;
-    private String currentMessage;
-    private int currentProgress;
+    private volatile String currentMessage;
+    private volatile int currentProgress;
+    private volatile AsyncDispatcher dispatcher;
     
     public ConversionSubject() {
-        this.observers = new ArrayList<>();
+        // copy-on-write so parallel batch workers can notify while observers are attached/detached
+        this.observers = new CopyOnWriteArrayList<>();
         this.currentProgress = 0;
         this.currentMessage = "";
     }
 
     public void setObservers(List<Observer> observers) {
-        this.observers = observers;
+        this.observers = new CopyOnWriteArrayList<>(observers);
     }
 
     public void attach(Observer observer) {
@@ -31,9 +34,75 @@ public class ConversionSubject {
         System.out.println("Observer detached: " + observer.getClass().getSimpleName());
     }
 
+    /**
+     * Switches to asynchronous delivery: events are queued in a bounded ring
+     * buffer and handed to observers by a dedicated dispatcher thread.
+     */
+    public synchronized void enableAsyncDispatch(int capacity, OverflowPolicy policy) {
+        enableAsyncDispatch(capacity, policy, 10);
+    }
+
+    public synchronized void enableAsyncDispatch(int capacity, OverflowPolicy policy, int sampleRate) {
+        if (dispatcher != null) {
+            disableAsyncDispatch();
+        }
+        AsyncDispatcher created = new AsyncDispatcher(this, capacity, policy, sampleRate);
+        created.start();
+        this.dispatcher = created;
+    }
+
+    /**
+     * Delivers whatever is still queued and returns to synchronous delivery.
+     */
+    public synchronized void disableAsyncDispatch() {
+        AsyncDispatcher current = dispatcher;
+        if (current != null) {
+            dispatcher = null;
+            current.shutdown(5, TimeUnit.SECONDS);
+        }
+    }
+
+    public boolean isAsyncDispatch() {
+        return dispatcher != null;
+    }
+
+    /**
+     * Waits until all events published so far have reached the observers.
+     */
+    public boolean flush(long timeout, TimeUnit unit) {
+        AsyncDispatcher current = dispatcher;
+        return current == null || current.flush(timeout, unit);
+    }
+
+    public long getDroppedEventCount() {
+        AsyncDispatcher current = dispatcher;
+        return current != null ? current.getDroppedCount() : 0;
+    }
+
+    public long getCoalescedEventCount() {
+        AsyncDispatcher current = dispatcher;
+        return current != null ? current.getCoalescedCount() : 0;
+    }
+
     public void notifyObservers(String message, int progress) {
+        notifyObservers(null, message, progress);
+    }
+
+    /**
+     * Notifies observers about progress of {@code job}. With asynchronous
+     * delivery, an intermediate event may be skipped when a newer event for
+     * the same job (the same object) is already queued; events without a job
+     * are always delivered.
+     */
+    public void notifyObservers(Object job, String message, int progress) {
         this.currentMessage = message;
         this.currentProgress = progress;
+
+        AsyncDispatcher current = dispatcher;
+        if (current != null) {
+            current.publish(job, message, progress);
+            return;
+        }
         
         for (Observer observer : observers) {
             observer.update(message, progress);
@@ -56,6 +125,10 @@ public class ConversionSubject {
         return currentProgress;
     }
     
+    List<Observer> observers() {
+        return observers;
+    }
+
     public int getObserverCount() {
         return observers.size();
     }
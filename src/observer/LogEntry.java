@@ -0,0 +1,17 @@
+package observer;
+
+/**
+ * Raw log event as recorded on the hot path; formatted only when read.
+ */
+final class LogEntry {
+
+    final long timestampMillis;
+    final int progress;
+    final String message;
+
+    LogEntry(long timestampMillis, int progress, String message) {
+        this.timestampMillis = timestampMillis;
+        this.progress = progress;
+        this.message = message;
+    }
+}
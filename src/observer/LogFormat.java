@@ -0,0 +1,42 @@
+package observer;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Formats raw log tuples as {@code [timestamp] [Progress: n%] message}. The
+ * timestamp text is cached per second, since consecutive entries almost
+ * always share it. Not thread-safe; each consumer keeps its own instance.
+ */
+final class LogFormat {
+
+    private final DateTimeFormatter formatter;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private long cachedSecond = Long.MIN_VALUE;
+    private String cachedTimestamp;
+
+    LogFormat(DateTimeFormatter formatter) {
+        this.formatter = formatter;
+    }
+
+    String format(long timestampMillis, int progress, String message) {
+        StringBuilder line = new StringBuilder(message.length() + 48);
+        appendTo(line, timestampMillis, progress, message);
+        return line.toString();
+    }
+
+    void appendTo(StringBuilder line, long timestampMillis, int progress, String message) {
+        line.append('[').append(timestamp(timestampMillis)).append("] [Progress: ")
+                .append(progress).append("%] ").append(message);
+    }
+
+    private String timestamp(long timestampMillis) {
+        long second = Math.floorDiv(timestampMillis, 1000);
+        if (second != cachedSecond) {
+            cachedTimestamp = formatter.format(Instant.ofEpochMilli(timestampMillis).atZone(zone));
+            cachedSecond = second;
+        }
+        return cachedTimestamp;
+    }
+}
@@ -1,53 +1,129 @@
 package observer;
 
-import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class LogObserver implements Observer {
-    
-    private List<String> logEntries;
+
+    public static final int DEFAULT_RETENTION = 10_000;
+
+    // ring buffer of raw (timestamp, progress, message) tuples; formatted only when read
+    private long[] timestamps;
+    private int[] progressValues;
+    private String[] messages;
+    private int head;
+    private int count;
+
     private DateTimeFormatter formatter;
+    private LogFormat logFormat;
+    private boolean consoleOutput;
+    private AsyncFileAppender fileAppender;
 
     public LogObserver() {
-        this.logEntries = new ArrayList<>();
+        this(DEFAULT_RETENTION);
+    }
+
+    public LogObserver(int retention) {
+        allocate(Math.max(1, retention));
         this.formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        this.logFormat = new LogFormat(formatter);
     }
 
-    public void setLogEntries(List<String> logEntries) {
-        this.logEntries = logEntries;
+    public synchronized void setLogEntries(List<String> logEntries) {
+        allocate(Math.max(timestamps.length, logEntries.size()));
+        for (String entry : logEntries) {
+            // already formatted: keep as-is, marked by a missing timestamp
+            record(Long.MIN_VALUE, 0, entry);
+        }
     }
 
-    public void setFormatter(DateTimeFormatter formatter) {
+    public synchronized void setFormatter(DateTimeFormatter formatter) {
         this.formatter = formatter;
+        this.logFormat = new LogFormat(formatter);
+    }
+
+    /**
+     * Echoes every event to stdout as it arrives. Off by default: it formats
+     * and prints on the notifying thread, so keep it to demos and debugging.
+     */
+    public void setConsoleOutput(boolean consoleOutput) {
+        this.consoleOutput = consoleOutput;
+    }
+
+    public void setFileAppender(AsyncFileAppender fileAppender) {
+        this.fileAppender = fileAppender;
     }
 
     @Override
-    public void update(String message, int progress) {
-        String timestamp = LocalDateTime.now().format(formatter);
-        String logEntry = String.format("[%s] [Progress: %d%%] %s", 
-            timestamp, progress, message);
-        
-        logEntries.add(logEntry);
-        System.out.println("[LOG OBSERVER] " + logEntry);
+    public synchronized void update(String message, int progress) {
+        long timestamp = System.currentTimeMillis();
+        record(timestamp, progress, message);
 
+        AsyncFileAppender appender = fileAppender;
+        if (appender != null) {
+            appender.append(new LogEntry(timestamp, progress, message));
+        }
+        if (consoleOutput) {
+            System.out.println("[LOG OBSERVER] " + logFormat.format(timestamp, progress, message));
+        }
     }
 
-    public List<String> getLogEntries() {
-        return new ArrayList<>(logEntries);
+    public synchronized List<String> getLogEntries() {
+        List<String> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entries.add(formatAt(i));
+        }
+        return entries;
+    }
+
+    public synchronized int getRetainedCount() {
+        return count;
     }
 
-    public void printLogs() {
+    public synchronized void printLogs() {
         System.out.println("\n=== Conversion Log ===");
-        for (String entry : logEntries) {
-            System.out.println(entry);
+        for (int i = 0; i < count; i++) {
+            System.out.println(formatAt(i));
         }
         System.out.println("===================\n");
     }
 
-    public void clearLogs() {
-        logEntries.clear();
+    public synchronized void clearLogs() {
+        head = 0;
+        count = 0;
+        Arrays.fill(messages, null);
         System.out.println("[LOG OBSERVER] Logs cleared");
     }
+
+    private void record(long timestamp, int progress, String message) {
+        int slot = (head + count) % timestamps.length;
+        if (count == timestamps.length) {
+            // full: overwrite the oldest entry
+            slot = head;
+            head = (head + 1) % timestamps.length;
+        } else {
+            count++;
+        }
+        timestamps[slot] = timestamp;
+        progressValues[slot] = progress;
+        messages[slot] = message;
+    }
+
+    private String formatAt(int index) {
+        int slot = (head + index) % timestamps.length;
+        if (timestamps[slot] == Long.MIN_VALUE) {
+            return messages[slot];
+        }
+        return logFormat.format(timestamps[slot], progressValues[slot], messages[slot]);
+    }
+
+    private void allocate(int capacity) {
+        timestamps = new long[capacity];
+        progressValues = new int[capacity];
+        messages = new String[capacity];
+        head = 0;
+        count = 0;
+    }
 }
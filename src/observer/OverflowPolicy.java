@@ -0,0 +1,13 @@
+package observer;
+
+/**
+ * What an asynchronous {@link ConversionSubject} does when its event buffer is full.
+ */
+public enum OverflowPolicy {
+    // evict the oldest queued event to make room; conversions never wait
+    DROP_OLDEST,
+    // make the converting thread wait for the dispatcher
+    BLOCK,
+    // keep one in every N overflowing events (and every completion), drop the rest
+    SAMPLE
+}
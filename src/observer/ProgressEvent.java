@@ -0,0 +1,19 @@
+package observer;
+
+final class ProgressEvent {
+
+    final String message;
+    final int progress;
+    // the job the event reports on, compared by identity; null events are never coalesced
+    final Object jobKey;
+
+    ProgressEvent(String message, int progress, Object jobKey) {
+        this.message = message;
+        this.progress = progress;
+        this.jobKey = jobKey;
+    }
+
+    boolean isIntermediate() {
+        return progress > 0 && progress < 100;
+    }
+}
@@ -14,12 +14,12 @@ public class ProgressObserver implements Observer {
 
     @Override
     public void update(String message, int progress) {
-        System.out.println("[PROGRESS OBSERVER - " + name + "] " + progress + "% | " + message);
-
-        displayProgressBar(progress);
+        // print the status line and the bar in one call so parallel workers don't interleave them
+        System.out.println("[PROGRESS OBSERVER - " + name + "] " + progress + "% | " + message
+                + System.lineSeparator() + buildProgressBar(progress));
     }
 
-    private void displayProgressBar(int progress) {
+    private String buildProgressBar(int progress) {
         int barLength = 50;
         int filled = (int) (barLength * progress / 100.0);
         
@@ -35,6 +35,6 @@ public class ProgressObserver implements Observer {
         }
         bar.append("] ").append(progress).append("%");
         
-        System.out.println(bar);
+        return bar.toString();
     }
 }
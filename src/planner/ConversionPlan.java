@@ -0,0 +1,90 @@
+package planner;
+
+import model.Document;
+import util.ConversionException;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ordered list of conversion hops from an input format to a target format.
+ * Hops run back to back in memory; each intermediate document is released as
+ * soon as the next hop has consumed it.
+ */
+public class ConversionPlan {
+
+    private final List<EdgeStats> hops;
+    private final double estimatedNanos;
+    private final AtomicLong executions = new AtomicLong();
+
+    ConversionPlan(List<EdgeStats> hops, double estimatedNanos) {
+        this.hops = List.copyOf(hops);
+        this.estimatedNanos = estimatedNanos;
+    }
+
+    public Document execute(Document input) throws ConversionException {
+        executions.incrementAndGet();
+        Document current = input;
+        for (EdgeStats hop : hops) {
+            long inputBytes = current.getFileSize();
+            long start = System.nanoTime();
+            Document next;
+            try {
+                next = hop.getStrategy().convert(current);
+            } catch (ConversionException | RuntimeException e) {
+                hop.recordFailure();
+                throw e;
+            }
+            hop.record(inputBytes, next.getFileSize(), System.nanoTime() - start);
+
+            if (current != input && current.getContentSource() != null) {
+                current.getContentSource().release();
+            }
+            current = next;
+        }
+        if (hops.size() > 1) {
+            current.addMetadata("conversion_path", describePath());
+        }
+        return current;
+    }
+
+    public List<EdgeStats> getHops() {
+        return hops;
+    }
+
+    public int getHopCount() {
+        return hops.size();
+    }
+
+    public double getEstimatedNanos() {
+        return estimatedNanos;
+    }
+
+    long getExecutionCount() {
+        return executions.get();
+    }
+
+    public String describePath() {
+        StringBuilder path = new StringBuilder(hops.get(0).getInput().name());
+        for (EdgeStats hop : hops) {
+            path.append(" -> ").append(hop.getOutput());
+        }
+        return path.toString();
+    }
+
+    public String describeStrategies() {
+        StringBuilder names = new StringBuilder();
+        for (EdgeStats hop : hops) {
+            if (names.length() > 0) {
+                names.append(" + ");
+            }
+            names.append(hop.getStrategy().getStrategyName());
+        }
+        return names.toString();
+    }
+
+    @Override
+    public String toString() {
+        return describePath() + " [" + describeStrategies() + "]";
+    }
+}
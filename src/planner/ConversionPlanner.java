@@ -0,0 +1,132 @@
+package planner;
+
+import factory.StrategyRegistry;
+import model.Format;
+import strategy.ConversionStrategy;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Plans conversions over the graph of registered strategies. A direct route
+ * is always used when one exists; otherwise the cheapest chain of at most
+ * {@link #MAX_HOPS} hops is chosen from the measured per-edge latency and
+ * output-size statistics. Plans are cached per format pair and re-planned
+ * periodically so they follow the live statistics.
+ */
+public class ConversionPlanner {
+
+    public static final int MAX_HOPS = 4;
+    // typical payload used to compare paths; the ranking barely depends on it
+    private static final double REFERENCE_INPUT_BYTES = 1024 * 1024;
+    // small bias towards shorter chains when measured costs are close
+    private static final double HOP_PENALTY_NANOS = 50_000;
+    private static final long REPLAN_INTERVAL = 1000;
+
+    private static final Format[] FORMATS = Format.values();
+
+    private final Map<Format, List<EdgeStats>> outgoing = new EnumMap<>(Format.class);
+    private final EdgeStats[] edges = new EdgeStats[FORMATS.length * FORMATS.length];
+    private final Map<Integer, ConversionPlan> plans = new ConcurrentHashMap<>();
+
+    public ConversionPlanner(StrategyRegistry registry) {
+        for (Format input : FORMATS) {
+            List<EdgeStats> fromInput = new ArrayList<>();
+            for (Format output : FORMATS) {
+                ConversionStrategy strategy = registry.resolve(input, output);
+                if (strategy != null) {
+                    EdgeStats edge = new EdgeStats(input, output, strategy);
+                    edges[pairKey(input, output)] = edge;
+                    if (input != output) {
+                        fromInput.add(edge);
+                    }
+                }
+            }
+            outgoing.put(input, fromInput);
+        }
+    }
+
+    /**
+     * Returns the plan for the pair, or null if the target cannot be reached.
+     */
+    public ConversionPlan plan(Format input, Format output) {
+        int key = pairKey(input, output);
+        ConversionPlan cached = plans.get(key);
+        if (cached != null && (cached.getHopCount() == 1 || cached.getExecutionCount() < REPLAN_INTERVAL)) {
+            return cached;
+        }
+
+        ConversionPlan planned = computePlan(input, output);
+        if (planned != null) {
+            plans.put(key, planned);
+        }
+        return planned;
+    }
+
+    public ConversionPlan plan(String inputFormat, String outputFormat) {
+        return plan(Format.of(inputFormat), Format.of(outputFormat));
+    }
+
+    public EdgeStats getEdge(Format input, Format output) {
+        return edges[pairKey(input, output)];
+    }
+
+    public void invalidatePlans() {
+        plans.clear();
+    }
+
+    private ConversionPlan computePlan(Format input, Format output) {
+        if (output == Format.UNKNOWN) {
+            return null;
+        }
+        EdgeStats direct = edges[pairKey(input, output)];
+        if (direct != null) {
+            return new ConversionPlan(List.of(direct), direct.estimateNanos(REFERENCE_INPUT_BYTES));
+        }
+
+        // the graph has a handful of formats, so an exhaustive search over simple paths is cheap and exact
+        Search search = new Search(output);
+        search.visit(input, new ArrayList<>(), 0.0, REFERENCE_INPUT_BYTES, 1L << input.ordinal());
+        return search.best != null ? new ConversionPlan(search.best, search.bestCost) : null;
+    }
+
+    private final class Search {
+        private final Format target;
+        private List<EdgeStats> best;
+        private double bestCost = Double.MAX_VALUE;
+
+        Search(Format target) {
+            this.target = target;
+        }
+
+        void visit(Format current, List<EdgeStats> path, double cost, double bytes, long visited) {
+            if (cost >= bestCost || path.size() == MAX_HOPS) {
+                return;
+            }
+            for (EdgeStats edge : outgoing.get(current)) {
+                Format next = edge.getOutput();
+                if ((visited & (1L << next.ordinal())) != 0) {
+                    continue;
+                }
+                double hopCost = cost + edge.estimateNanos(bytes) + HOP_PENALTY_NANOS;
+                path.add(edge);
+                if (next == target) {
+                    if (hopCost < bestCost) {
+                        bestCost = hopCost;
+                        best = new ArrayList<>(path);
+                    }
+                } else {
+                    visit(next, path, hopCost, bytes * edge.getSizeRatio(), visited | (1L << next.ordinal()));
+                }
+                path.remove(path.size() - 1);
+            }
+        }
+    }
+
+    private static int pairKey(Format input, Format output) {
+        return input.ordinal() * FORMATS.length + output.ordinal();
+    }
+}
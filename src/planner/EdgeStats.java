@@ -0,0 +1,101 @@
+package planner;
+
+import metrics.MetricsRegistry;
+import metrics.StageMetrics;
+import model.Format;
+import strategy.ConversionStrategy;
+
+/**
+ * Live statistics for one conversion edge, kept as exponentially weighted
+ * moving averages so the planner follows current behaviour.
+ */
+public class EdgeStats {
+
+    // weight of the newest sample
+    private static final double ALPHA = 0.2;
+    // assumed until the edge has been measured
+    private static final double DEFAULT_NANOS_PER_BYTE = 10.0;
+    private static final double DEFAULT_FIXED_NANOS = 200_000.0;
+
+    private final Format input;
+    private final Format output;
+    private final ConversionStrategy strategy;
+    private final StageMetrics metrics;
+
+    private double nanosPerByte = DEFAULT_NANOS_PER_BYTE;
+    private double fixedNanos = DEFAULT_FIXED_NANOS;
+    private double sizeRatio = 1.0;
+    private long samples;
+    private long failures;
+
+    EdgeStats(Format input, Format output, ConversionStrategy strategy) {
+        this.input = input;
+        this.output = output;
+        this.strategy = strategy;
+        this.metrics = MetricsRegistry.shared().stage(MetricsRegistry.STRATEGY, strategy.getStrategyName());
+    }
+
+    public void record(long inputBytes, long outputBytes, long elapsedNanos) {
+        metrics.record(elapsedNanos, inputBytes, outputBytes);
+        updateAverages(inputBytes, outputBytes, elapsedNanos);
+    }
+
+    private synchronized void updateAverages(long inputBytes, long outputBytes, long elapsedNanos) {
+        double perByte = inputBytes > 0 ? (double) elapsedNanos / inputBytes : nanosPerByte;
+        double ratio = inputBytes > 0 ? (double) outputBytes / inputBytes : 1.0;
+        if (samples == 0) {
+            nanosPerByte = perByte;
+            fixedNanos = inputBytes > 0 ? 0.0 : elapsedNanos;
+            sizeRatio = ratio;
+        } else {
+            nanosPerByte += ALPHA * (perByte - nanosPerByte);
+            if (inputBytes == 0) {
+                fixedNanos += ALPHA * (elapsedNanos - fixedNanos);
+            }
+            sizeRatio += ALPHA * (ratio - sizeRatio);
+        }
+        samples++;
+    }
+
+    public void recordFailure() {
+        metrics.recordError();
+        synchronized (this) {
+            failures++;
+        }
+    }
+
+    /**
+     * Estimated time to convert {@code inputBytes} over this edge.
+     */
+    public synchronized double estimateNanos(double inputBytes) {
+        double estimate = fixedNanos + nanosPerByte * inputBytes;
+        // an edge that keeps failing should lose to any working alternative
+        return failures > samples ? estimate * 10 : estimate;
+    }
+
+    public synchronized double getSizeRatio() {
+        return sizeRatio;
+    }
+
+    public synchronized long getSamples() {
+        return samples;
+    }
+
+    public Format getInput() {
+        return input;
+    }
+
+    public Format getOutput() {
+        return output;
+    }
+
+    public ConversionStrategy getStrategy() {
+        return strategy;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return input + " -> " + output + " (" + strategy.getStrategyName() + ", samples=" + samples
+                + String.format(", %.2f ns/byte, size x%.3f)", nanosPerByte, sizeRatio);
+    }
+}
@@ -0,0 +1,407 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import decorator.BaseDocumentProcessor;
+import decorator.CompressionDecorator;
+import decorator.CompressionFormat;
+import decorator.DocumentProcessor;
+import decorator.EncryptionDecorator;
+import decorator.EncryptionMode;
+import decorator.WatermarkDecorator;
+import facade.ConversionFacade;
+import metrics.MetricsRegistry;
+import metrics.StageMetrics;
+import model.Document;
+import model.IncomingContent;
+import util.ConversionException;
+import util.FormatSniffer;
+import util.WorkerPools;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embedded HTTP endpoint for a {@link ConversionFacade}:
+ * <pre>
+ * POST /convert?to=PDF&amp;name=report.docx&amp;watermark=DRAFT&amp;compress=gzip&amp;encrypt=chunked
+ * </pre>
+ * Every exchange runs on its own virtual thread, so a slow client costs a
+ * socket and a small stack rather than a platform thread. The handler thread
+ * receives an upload with a {@code Content-Length} into an
+ * {@link IncomingContent}: once the first bytes are sniffed, the conversion
+ * starts on a second virtual thread while the handler receives the rest.
+ * Chunked uploads are buffered first. Either way the upload spills to disk
+ * past {@code spillThreshold} bytes, and the result is streamed back with
+ * chunked transfer encoding once the whole upload has arrived. Only
+ * {@code maxConversions} uploads are converted at once.
+ *
+ * <p>Decorators are applied in the order their parameters appear:
+ * {@code watermark=<text>}, {@code compress=gzip|deflate} (with an optional
+ * {@code level}) and {@code encrypt=stream|chunked}. Encryption uses the key
+ * set with {@link #setEncryptionKey}; keys are never taken from the URL.
+ *
+ * <p>Before JDK 24 the server's body streams read inside {@code synchronized}
+ * methods, so a handler blocked on a slow client pins its carrier thread
+ * until more bytes arrive. The number of OS threads stays bounded by the
+ * carrier pool either way; JDK 24 removes the pinning.
+ */
+public class ConversionServer implements AutoCloseable {
+
+    public static final String CONVERT_PATH = "/convert";
+
+    private static final int DEFAULT_BACKLOG = 1024;
+    private static final int DEFAULT_SPILL_THRESHOLD = 1024 * 1024;
+
+    private final ConversionFacade facade;
+    private final int port;
+    private final StageMetrics requestMetrics = MetricsRegistry.shared().stage(MetricsRegistry.IO, "http");
+    private final AtomicLong converted = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private int backlog = DEFAULT_BACKLOG;
+    private int maxConversions = WorkerPools.defaultParallelism();
+    private int spillThreshold = DEFAULT_SPILL_THRESHOLD;
+    private String encryptionKey;
+
+    private Semaphore permits;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * @param port the port to listen on, or 0 for any free port
+     */
+    public ConversionServer(ConversionFacade facade, int port) {
+        this.facade = facade;
+        this.port = port;
+    }
+
+    /**
+     * Connections the OS queues while none are being accepted.
+     */
+    public void setBacklog(int backlog) {
+        this.backlog = Math.max(1, backlog);
+    }
+
+    public void setMaxConversions(int maxConversions) {
+        this.maxConversions = Math.max(1, maxConversions);
+    }
+
+    /**
+     * Upload bytes kept on the heap per request before the rest goes to a
+     * temporary file; keeps memory flat with many large uploads in progress.
+     */
+    public void setSpillThreshold(int spillThreshold) {
+        this.spillThreshold = spillThreshold;
+    }
+
+    public void setEncryptionKey(String encryptionKey) {
+        this.encryptionKey = encryptionKey;
+    }
+
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            return;
+        }
+        permits = new Semaphore(maxConversions);
+        executor = WorkerPools.newVirtualPool("conversion-http");
+        server = HttpServer.create(new InetSocketAddress(port), backlog);
+        server.createContext(CONVERT_PATH, this::handle);
+        server.setExecutor(executor);
+        server.start();
+        System.out.println("ConversionServer: Listening on port " + getPort());
+    }
+
+    /**
+     * Stops accepting requests and gives running exchanges up to
+     * {@code delaySeconds} to finish.
+     */
+    public synchronized void stop(int delaySeconds) {
+        if (server == null) {
+            return;
+        }
+        server.stop(delaySeconds);
+        executor.shutdown();
+        server = null;
+        executor = null;
+        System.out.println("ConversionServer: Stopped after " + converted.get() + " converted, "
+                + failed.get() + " failed");
+    }
+
+    @Override
+    public void close() {
+        stop(5);
+    }
+
+    public synchronized int getPort() {
+        return server != null ? server.getAddress().getPort() : port;
+    }
+
+    public long getConvertedCount() {
+        return converted.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try (exchange) {
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                sendError(exchange, 405, "Use POST to upload the document");
+                return;
+            }
+            Request request;
+            try {
+                request = parse(exchange.getRequestURI().getRawQuery());
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, e.getMessage());
+                return;
+            }
+            convert(exchange, request, start);
+        }
+    }
+
+    private void convert(HttpExchange exchange, Request request, long start) throws IOException {
+        long length = requestLength(exchange);
+        IncomingContent upload = length >= 0 ? new IncomingContent(length, spillThreshold) : null;
+        // closed with the exchange
+        InputStream body = exchange.getRequestBody();
+        Document input;
+        try {
+            if (upload != null) {
+                upload.receive(body, FormatSniffer.HEADER_SIZE);
+                input = facade.loadDocument(upload, request.fileName, request.outputFormat);
+            } else {
+                input = facade.loadDocument(body, request.fileName, request.outputFormat, spillThreshold);
+            }
+        } catch (ConversionException e) {
+            if (upload != null) {
+                upload.release();
+            }
+            sendError(exchange, 415, e.getMessage());
+            return;
+        } catch (IOException e) {
+            // the client went away mid-upload; nobody is left to answer
+            if (upload != null) {
+                upload.release();
+            }
+            failed.incrementAndGet();
+            requestMetrics.recordError();
+            return;
+        }
+
+        Document output = null;
+        try {
+            try {
+                if (upload != null) {
+                    output = convertWhileReceiving(body, upload, input, request);
+                } else {
+                    output = convertWithPermit(input, request);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                sendError(exchange, 503, "Server is shutting down");
+                return;
+            } catch (ConversionException | RuntimeException e) {
+                sendError(exchange, 422, "Conversion failed: " + e.getMessage());
+                return;
+            }
+
+            if (upload != null) {
+                try {
+                    // a result is only sent for an upload that arrived in full
+                    upload.awaitReceived();
+                } catch (IOException e) {
+                    failed.incrementAndGet();
+                    requestMetrics.recordError();
+                    return;
+                }
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+            exchange.getResponseHeaders().set("Content-Disposition",
+                    "attachment; filename=\"" + output.getFileName().replace("\"", "") + "\"");
+            exchange.getResponseHeaders().set("X-Output-Format", output.getFormat());
+            // a zero length selects chunked transfer encoding
+            exchange.sendResponseHeaders(200, 0);
+            long sent;
+            try (OutputStream out = exchange.getResponseBody()) {
+                sent = output.getContentSource().transferTo(out);
+            }
+            converted.incrementAndGet();
+            requestMetrics.record(System.nanoTime() - start, input.getFileSize(), sent);
+        } finally {
+            if (output != null && output != input) {
+                output.release();
+            }
+            input.release();
+        }
+    }
+
+    /**
+     * Converts on a second virtual thread while this one receives the rest of
+     * the upload. A failed conversion releases the upload, which stops the
+     * receiving early; either way the receiving is over when this returns.
+     */
+    private Document convertWhileReceiving(InputStream body, IncomingContent upload, Document input,
+                                           Request request) throws ConversionException, InterruptedException {
+        CompletableFuture<Document> conversion = new CompletableFuture<>();
+        Thread.ofVirtual().name("conversion-http-convert").start(() -> {
+            try {
+                conversion.complete(convertWithPermit(input, request));
+            } catch (InterruptedException | ConversionException | RuntimeException e) {
+                upload.release();
+                conversion.completeExceptionally(e);
+            }
+        });
+        upload.receive(body);
+        try {
+            return conversion.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ConversionException) {
+                throw (ConversionException) cause;
+            }
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            }
+            throw (RuntimeException) cause;
+        }
+    }
+
+    private Document convertWithPermit(Document input, Request request)
+            throws ConversionException, InterruptedException {
+        permits.acquire();
+        try {
+            return facade.convertAndProcess(input, request.outputFormat, request.processor);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * @return the declared body length, or -1 for a chunked upload
+     */
+    private static long requestLength(HttpExchange exchange) {
+        String value = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        failed.incrementAndGet();
+        requestMetrics.recordError();
+        byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private Request parse(String rawQuery) {
+        Request request = new Request();
+        DocumentProcessor processor = new BaseDocumentProcessor();
+        List<CompressionDecorator> compressors = new ArrayList<>();
+        Integer level = null;
+
+        if (rawQuery != null && !rawQuery.isEmpty()) {
+            for (String pair : rawQuery.split("&")) {
+                if (pair.isEmpty()) {
+                    continue;
+                }
+                int eq = pair.indexOf('=');
+                String name = decode(eq >= 0 ? pair.substring(0, eq) : pair);
+                String value = eq >= 0 ? decode(pair.substring(eq + 1)) : "";
+                switch (name) {
+                    case "to":
+                        request.outputFormat = value.toUpperCase(Locale.ROOT);
+                        break;
+                    case "name":
+                        if (value.chars().anyMatch(Character::isISOControl)) {
+                            throw new IllegalArgumentException("Invalid value for name: control characters are not allowed");
+                        }
+                        request.fileName = value;
+                        break;
+                    case "watermark":
+                        processor = new WatermarkDecorator(processor, value);
+                        break;
+                    case "compress":
+                        CompressionDecorator compressor = new CompressionDecorator(processor);
+                        compressor.setFormat(enumValue(CompressionFormat.class, name, value));
+                        compressors.add(compressor);
+                        processor = compressor;
+                        break;
+                    case "level":
+                        level = intValue(name, value);
+                        break;
+                    case "encrypt":
+                        if (encryptionKey == null) {
+                            throw new IllegalArgumentException("Encryption is not configured on this server");
+                        }
+                        processor = new EncryptionDecorator(processor, encryptionKey,
+                                enumValue(EncryptionMode.class, name, value));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown parameter: " + name);
+                }
+            }
+        }
+        if (request.outputFormat == null || request.outputFormat.isEmpty()) {
+            throw new IllegalArgumentException("Missing parameter: to");
+        }
+        if (level != null) {
+            for (CompressionDecorator compressor : compressors) {
+                compressor.setCompressionLevel(level);
+            }
+        }
+        request.processor = processor instanceof BaseDocumentProcessor ? null : processor;
+        return request;
+    }
+
+    private static String decode(String value) {
+        return URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+
+    private static <E extends Enum<E>> E enumValue(Class<E> type, String name, String value) {
+        try {
+            return Enum.valueOf(type, value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid value for " + name + ": " + value);
+        }
+    }
+
+    private static int intValue(String name, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for " + name + ": " + value);
+        }
+    }
+
+    private static final class Request {
+        private String outputFormat;
+        private String fileName = "upload";
+        private DocumentProcessor processor;
+    }
+}
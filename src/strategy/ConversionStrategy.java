@@ -3,10 +3,27 @@ package strategy;
 import model.Document;
 import util.ConversionException;
 
+import java.io.IOException;
+import java.io.OutputStream;
+
 public interface ConversionStrategy {
     Document convert(Document input) throws ConversionException;
 
     boolean supports(String inputFormat, String outputFormat);
 
     String getStrategyName();
+
+    /**
+     * Converts the input and streams the converted payload into the given output.
+     * Strategies that can emit output incrementally should override this.
+     */
+    default Document convert(Document input, OutputStream output) throws ConversionException {
+        Document result = convert(input);
+        try {
+            result.getContentSource().transferTo(output);
+        } catch (IOException e) {
+            throw new ConversionException("Failed to stream converted content", e);
+        }
+        return result;
+    }
 }
@@ -14,7 +14,7 @@ public class DocxToTxtStrategy implements ConversionStrategy {
         System.out.println("Converting DOCX to TXT using DocxToTxtStrategy...");
         
         try {
-            byte[] convertedContent = simulateConversion(input.getContent());
+            byte[] convertedContent = simulateConversion(input.getFileSize());
             
             Document result = new Document(convertedContent, "TXT", 
                 input.getFileName().replace(".docx", ".txt"));
@@ -41,9 +41,9 @@ public class DocxToTxtStrategy implements ConversionStrategy {
         return "DOCX to TXT Conversion Strategy";
     }
     
-    private byte[] simulateConversion(byte[] content) {
+    private byte[] simulateConversion(long contentSize) {
         String simulatedContent = "Converted from " + "DOCX to TXT" +
-            " (Original size: " + content.length + " bytes)";
+            " (Original size: " + contentSize + " bytes)";
         return simulatedContent.getBytes();
     }
 }
@@ -25,7 +25,7 @@ public class ImageToPdfStrategy implements ConversionStrategy {
     }
 
     private Document getDocument(Document input) {
-        byte[] convertedContent = simulateConversion(input.getContent(), input.getFormat());
+        byte[] convertedContent = simulateConversion(input.getFileSize(), input.getFormat());
 
         String outputFileName = input.getFileName();
         outputFileName = outputFileName.substring(0, outputFileName.lastIndexOf('.')) + ".pdf";
@@ -51,9 +51,9 @@ public class ImageToPdfStrategy implements ConversionStrategy {
         return "Image to PDF Conversion Strategy";
     }
     
-    private byte[] simulateConversion(byte[] content, String from) {
+    private byte[] simulateConversion(long contentSize, String from) {
         String simulatedContent = "Converted from " + from + " to " + "PDF" +
-            " (Original size: " + content.length + " bytes)";
+            " (Original size: " + contentSize + " bytes)";
         return simulatedContent.getBytes();
     }
 }
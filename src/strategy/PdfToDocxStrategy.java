@@ -14,7 +14,7 @@ public class PdfToDocxStrategy implements ConversionStrategy {
         System.out.println("Converting PDF to DOCX using PdfToDocxStrategy...");
         
         try {
-            byte[] convertedContent = simulateConversion(input.getContent());
+            byte[] convertedContent = simulateConversion(input.getFileSize());
             
             Document result = new Document(convertedContent, "DOCX", 
                 input.getFileName().replace(".pdf", ".docx"));
@@ -42,9 +42,9 @@ public class PdfToDocxStrategy implements ConversionStrategy {
     }
     
 
-    private byte[] simulateConversion(byte[] content) {
+    private byte[] simulateConversion(long contentSize) {
         String simulatedContent = "Converted from " + "PDF" + " to " + "DOCX" +
-            " (Original size: " + content.length + " bytes)";
+            " (Original size: " + contentSize + " bytes)";
         return simulatedContent.getBytes();
     }
 }
@@ -0,0 +1,201 @@
+package util;
+
+import model.ByteArrayContent;
+import model.ContentSource;
+import model.FileContent;
+import model.PooledContent;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Writes document content so that readers only ever see complete files: data
+ * goes to a temp file in the target directory and is renamed into place.
+ * File-backed content is copied with {@code FileChannel.transferTo}, other
+ * sources through a pooled direct buffer.
+ *
+ * <p>With durability on, a single write fsyncs the file and its directory.
+ * A {@link Batch} defers that work to {@link Batch#commit()}, which fsyncs all
+ * files back to back, renames them, and fsyncs each directory once.
+ */
+public class AtomicFileWriter {
+
+    private static final int DIRECT_BUFFER_SIZE = 256 * 1024;
+
+    private final boolean durable;
+
+    public AtomicFileWriter() {
+        this(true);
+    }
+
+    public AtomicFileWriter(boolean durable) {
+        this.durable = durable;
+    }
+
+    public boolean isDurable() {
+        return durable;
+    }
+
+    public void write(ContentSource content, Path target) throws IOException {
+        Path temp = writeTemp(content, target);
+        try {
+            if (durable) {
+                force(temp);
+            }
+            moveIntoPlace(temp, target);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        if (durable) {
+            forceDirectory(parentOf(target));
+        }
+    }
+
+    public Batch newBatch() {
+        return new Batch();
+    }
+
+    public class Batch implements AutoCloseable {
+
+        private final List<Path> temps = new ArrayList<>();
+        private final List<Path> targets = new ArrayList<>();
+        private boolean committed;
+
+        public void add(ContentSource content, Path target) throws IOException {
+            temps.add(writeTemp(content, target));
+            targets.add(target);
+        }
+
+        public int size() {
+            return targets.size();
+        }
+
+        public void commit() throws IOException {
+            if (durable) {
+                // by now the kernel has been writing the batch back for a while,
+                // so most of these return quickly
+                for (Path temp : temps) {
+                    force(temp);
+                }
+            }
+            Set<Path> directories = new LinkedHashSet<>();
+            for (int i = 0; i < temps.size(); i++) {
+                moveIntoPlace(temps.get(i), targets.get(i));
+                directories.add(parentOf(targets.get(i)));
+            }
+            committed = true;
+            if (durable) {
+                for (Path directory : directories) {
+                    forceDirectory(directory);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                for (Path temp : temps) {
+                    Files.deleteIfExists(temp);
+                }
+            }
+        }
+    }
+
+    private Path writeTemp(ContentSource content, Path target) throws IOException {
+        Path directory = parentOf(target);
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, "." + target.getFileName(), ".tmp");
+
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (content instanceof FileContent) {
+                transferFromFile(((FileContent) content).getPath(), out);
+            } else if (content instanceof ByteArrayContent) {
+                writeFully(out, ((ByteArrayContent) content).asReadOnlyBuffer());
+            } else if (content instanceof PooledContent) {
+                writeFully(out, ((PooledContent) content).asReadOnlyBuffer());
+            } else {
+                transferFromChannel(content, out);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return temp;
+    }
+
+    private static void transferFromFile(Path source, FileChannel out) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            long size = in.size();
+            long position = 0;
+            // transferTo may move fewer bytes than asked (e.g. 2 GB per call on Linux)
+            while (position < size) {
+                long transferred = in.transferTo(position, size - position, out);
+                if (transferred <= 0) {
+                    throw new IOException("Source file " + source + " shrank to " + position + " of " + size
+                            + " bytes while it was copied");
+                }
+                position += transferred;
+            }
+        }
+    }
+
+    private static void transferFromChannel(ContentSource content, FileChannel out) throws IOException {
+        // pooled rather than per-thread, so virtual threads don't each pin a direct buffer
+        ByteBuffer buffer = BufferPool.shared().borrowDirect(DIRECT_BUFFER_SIZE);
+        try (ReadableByteChannel in = content.openChannel()) {
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                writeFully(out, buffer);
+                buffer.clear();
+            }
+        } finally {
+            BufferPool.shared().release(buffer);
+        }
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private static void moveIntoPlace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void force(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    private static void forceDirectory(Path directory) {
+        // makes the rename itself durable; not supported on every platform (e.g. Windows)
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+            // directory fsync is best effort
+        }
+    }
+
+    private static Path parentOf(Path target) {
+        Path parent = target.toAbsolutePath().getParent();
+        return parent != null ? parent : target.toAbsolutePath();
+    }
+}
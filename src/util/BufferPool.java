@@ -0,0 +1,243 @@
+package util;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-class pool of heap arrays and direct buffers for content and stage
+ * buffers. Requests are rounded up to a power of two between 4 KB and 16 MB;
+ * larger requests are allocated unpooled. Idle buffers are kept in lock-free
+ * ring buffers up to a byte budget, so borrowing and releasing never block or
+ * allocate in steady state.
+ * <p>
+ * With {@code -Dsdp.buffers.debug=true} (or {@link #setDebug}) every borrow is
+ * tracked and a buffer that is garbage collected without being released is
+ * reported together with the stack that borrowed it.
+ */
+public final class BufferPool {
+
+    public static final int MIN_CLASS_SIZE = 4 * 1024;
+    public static final int MAX_CLASS_SIZE = 16 * 1024 * 1024;
+
+    private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_CLASS_SIZE);
+    private static final int CLASS_COUNT = Integer.numberOfTrailingZeros(MAX_CLASS_SIZE) - MIN_SHIFT + 1;
+    private static final int MAX_IDLE_PER_CLASS = 256;
+
+    private static final BufferPool SHARED = new BufferPool(
+            Math.min(64L * 1024 * 1024, Runtime.getRuntime().maxMemory() / 16),
+            Boolean.getBoolean("sdp.buffers.debug"));
+
+    private final long maxIdleBytes;
+    private final AtomicLong idleBytes = new AtomicLong();
+    private final BoundedRingBuffer<byte[]>[] heap;
+    private final BoundedRingBuffer<ByteBuffer>[] direct;
+
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder allocations = new LongAdder();
+
+    private volatile boolean debug;
+    private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+    private final Map<Integer, Set<LeakTracker>> outstanding = new ConcurrentHashMap<>();
+    private final LongAdder leaks = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public BufferPool(long maxIdleBytes, boolean debug) {
+        this.maxIdleBytes = maxIdleBytes;
+        this.debug = debug;
+        this.heap = (BoundedRingBuffer<byte[]>[]) new BoundedRingBuffer<?>[CLASS_COUNT];
+        this.direct = (BoundedRingBuffer<ByteBuffer>[]) new BoundedRingBuffer<?>[CLASS_COUNT];
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            int idle = (int) Math.max(2, Math.min(MAX_IDLE_PER_CLASS, maxIdleBytes / classSize(i)));
+            heap[i] = new BoundedRingBuffer<>(idle);
+            direct[i] = new BoundedRingBuffer<>(idle);
+        }
+    }
+
+    public static BufferPool shared() {
+        return SHARED;
+    }
+
+    public void setDebug(boolean debug) {
+        this.debug = debug;
+    }
+
+    /**
+     * Returns an array of at least {@code minSize} bytes; its contents are undefined.
+     */
+    public byte[] borrowHeap(int minSize) {
+        borrows.increment();
+        int sizeClass = sizeClass(minSize);
+        byte[] buffer = null;
+        if (sizeClass >= 0) {
+            buffer = heap[sizeClass].poll();
+            if (buffer != null) {
+                idleBytes.addAndGet(-buffer.length);
+            }
+        }
+        if (buffer == null) {
+            allocations.increment();
+            buffer = new byte[sizeClass >= 0 ? classSize(sizeClass) : minSize];
+        }
+        track(buffer);
+        return buffer;
+    }
+
+    public void release(byte[] buffer) {
+        if (buffer == null) {
+            return;
+        }
+        untrack(buffer);
+        int sizeClass = exactClass(buffer.length);
+        if (sizeClass >= 0 && reserveIdle(buffer.length) && !heap[sizeClass].offer(buffer)) {
+            idleBytes.addAndGet(-buffer.length);
+        }
+    }
+
+    /**
+     * Returns a cleared direct buffer with at least {@code minSize} bytes remaining.
+     */
+    public ByteBuffer borrowDirect(int minSize) {
+        borrows.increment();
+        int sizeClass = sizeClass(minSize);
+        ByteBuffer buffer = null;
+        if (sizeClass >= 0) {
+            buffer = direct[sizeClass].poll();
+            if (buffer != null) {
+                idleBytes.addAndGet(-buffer.capacity());
+            }
+        }
+        if (buffer == null) {
+            allocations.increment();
+            buffer = ByteBuffer.allocateDirect(sizeClass >= 0 ? classSize(sizeClass) : minSize);
+        }
+        track(buffer);
+        return buffer.clear();
+    }
+
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect()) {
+            return;
+        }
+        untrack(buffer);
+        int sizeClass = exactClass(buffer.capacity());
+        if (sizeClass >= 0 && reserveIdle(buffer.capacity()) && !direct[sizeClass].offer(buffer)) {
+            idleBytes.addAndGet(-buffer.capacity());
+        }
+    }
+
+    public long getBorrowCount() {
+        return borrows.sum();
+    }
+
+    /**
+     * Borrows that had to allocate a new buffer; flat in steady state.
+     */
+    public long getAllocationCount() {
+        return allocations.sum();
+    }
+
+    public long getIdleBytes() {
+        return idleBytes.get();
+    }
+
+    /**
+     * Buffers borrowed and not yet released (debug mode only).
+     */
+    public int getOutstandingCount() {
+        int count = 0;
+        for (Set<LeakTracker> trackers : outstanding.values()) {
+            count += trackers.size();
+        }
+        return count;
+    }
+
+    public long getLeakCount() {
+        reportLeaks();
+        return leaks.sum();
+    }
+
+    private boolean reserveIdle(long bytes) {
+        long current;
+        do {
+            current = idleBytes.get();
+            if (current + bytes > maxIdleBytes) {
+                return false;
+            }
+        } while (!idleBytes.compareAndSet(current, current + bytes));
+        return true;
+    }
+
+    private void track(Object buffer) {
+        if (!debug) {
+            return;
+        }
+        reportLeaks();
+        LeakTracker tracker = new LeakTracker(buffer, collected);
+        outstanding.computeIfAbsent(tracker.identity, key -> ConcurrentHashMap.newKeySet()).add(tracker);
+    }
+
+    private void untrack(Object buffer) {
+        if (!debug) {
+            return;
+        }
+        Set<LeakTracker> trackers = outstanding.get(System.identityHashCode(buffer));
+        if (trackers != null) {
+            for (LeakTracker tracker : trackers) {
+                if (tracker.refersTo(buffer)) {
+                    trackers.remove(tracker);
+                    tracker.clear();
+                    return;
+                }
+            }
+        }
+        System.err.println("BufferPool: Released a buffer that is not outstanding (double release?)");
+    }
+
+    private void reportLeaks() {
+        LeakTracker tracker;
+        while ((tracker = (LeakTracker) collected.poll()) != null) {
+            Set<LeakTracker> trackers = outstanding.get(tracker.identity);
+            if (trackers != null && trackers.remove(tracker)) {
+                leaks.increment();
+                System.err.println("BufferPool: LEAK - buffer was garbage collected without being released."
+                        + " Borrowed at:");
+                tracker.borrowedAt.printStackTrace();
+            }
+        }
+    }
+
+    private static int sizeClass(int minSize) {
+        if (minSize > MAX_CLASS_SIZE) {
+            return -1;
+        }
+        int size = Math.max(MIN_CLASS_SIZE, minSize);
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SHIFT;
+    }
+
+    private static int exactClass(int size) {
+        if (size < MIN_CLASS_SIZE || size > MAX_CLASS_SIZE || Integer.bitCount(size) != 1) {
+            return -1;
+        }
+        return Integer.numberOfTrailingZeros(size) - MIN_SHIFT;
+    }
+
+    private static int classSize(int sizeClass) {
+        return 1 << (sizeClass + MIN_SHIFT);
+    }
+
+    private static final class LeakTracker extends PhantomReference<Object> {
+        private final int identity;
+        private final Throwable borrowedAt = new Throwable("Buffer borrowed here");
+
+        LeakTracker(Object buffer, ReferenceQueue<Object> queue) {
+            super(buffer, queue);
+            this.identity = System.identityHashCode(buffer);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Streaming XXH64, a non-cryptographic 64-bit hash that runs at memory speed.
+ * Used to address cached and deduplicated content, never for security.
+ */
+public final class ContentHash {
+
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+    private static final long P5 = 0x27D4EB2F165667C5L;
+
+    private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final long seed;
+    private long v1;
+    private long v2;
+    private long v3;
+    private long v4;
+    private long totalLength;
+    private final byte[] pending = new byte[32];
+    private int pendingLength;
+
+    public ContentHash() {
+        this(0);
+    }
+
+    public ContentHash(long seed) {
+        this.seed = seed;
+        reset();
+    }
+
+    public static long hash(InputStream in) throws IOException {
+        ContentHash hash = new ContentHash();
+        byte[] buffer = BufferPool.shared().borrowHeap(64 * 1024);
+        try {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                hash.update(buffer, 0, read);
+            }
+        } finally {
+            BufferPool.shared().release(buffer);
+        }
+        return hash.getValue();
+    }
+
+    public static long hash(byte[] data) {
+        ContentHash hash = new ContentHash();
+        hash.update(data, 0, data.length);
+        return hash.getValue();
+    }
+
+    public static String toHex(long value) {
+        String hex = Long.toHexString(value);
+        return "0".repeat(16 - hex.length()) + hex;
+    }
+
+    public void reset() {
+        v1 = seed + P1 + P2;
+        v2 = seed + P2;
+        v3 = seed;
+        v4 = seed - P1;
+        totalLength = 0;
+        pendingLength = 0;
+    }
+
+    public void update(byte[] data, int offset, int length) {
+        totalLength += length;
+        int end = offset + length;
+
+        if (pendingLength > 0) {
+            int fill = Math.min(32 - pendingLength, length);
+            System.arraycopy(data, offset, pending, pendingLength, fill);
+            pendingLength += fill;
+            offset += fill;
+            if (pendingLength < 32) {
+                return;
+            }
+            consumeStripe(pending, 0);
+            pendingLength = 0;
+        }
+
+        while (offset + 32 <= end) {
+            consumeStripe(data, offset);
+            offset += 32;
+        }
+
+        if (offset < end) {
+            pendingLength = end - offset;
+            System.arraycopy(data, offset, pending, 0, pendingLength);
+        }
+    }
+
+    public long getValue() {
+        long h;
+        if (totalLength >= 32) {
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = mergeRound(h, v1);
+            h = mergeRound(h, v2);
+            h = mergeRound(h, v3);
+            h = mergeRound(h, v4);
+        } else {
+            h = seed + P5;
+        }
+        h += totalLength;
+
+        int i = 0;
+        for (; i + 8 <= pendingLength; i += 8) {
+            h ^= round(0, (long) LONG_LE.get(pending, i));
+            h = Long.rotateLeft(h, 27) * P1 + P4;
+        }
+        if (i + 4 <= pendingLength) {
+            h ^= ((int) INT_LE.get(pending, i) & 0xFFFFFFFFL) * P1;
+            h = Long.rotateLeft(h, 23) * P2 + P3;
+            i += 4;
+        }
+        for (; i < pendingLength; i++) {
+            h ^= (pending[i] & 0xFFL) * P5;
+            h = Long.rotateLeft(h, 11) * P1;
+        }
+
+        h ^= h >>> 33;
+        h *= P2;
+        h ^= h >>> 29;
+        h *= P3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    private void consumeStripe(byte[] data, int offset) {
+        v1 = round(v1, (long) LONG_LE.get(data, offset));
+        v2 = round(v2, (long) LONG_LE.get(data, offset + 8));
+        v3 = round(v3, (long) LONG_LE.get(data, offset + 16));
+        v4 = round(v4, (long) LONG_LE.get(data, offset + 24));
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * P2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * P1;
+    }
+
+    private static long mergeRound(long acc, long value) {
+        acc ^= round(0, value);
+        return acc * P1 + P4;
+    }
+}
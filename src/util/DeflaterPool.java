@@ -0,0 +1,65 @@
+package util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+/**
+ * Pool of {@link Deflater} instances keyed by compression level and wrapping.
+ * A Deflater owns a native zlib stream that is expensive to set up, so
+ * decorators borrow one per document and return it reset.
+ */
+public final class DeflaterPool {
+
+    private static final int MAX_IDLE_PER_KEY = 2 * Runtime.getRuntime().availableProcessors();
+
+    private static final DeflaterPool SHARED = new DeflaterPool();
+
+    // index: (level - 1) * 2 + (nowrap ? 1 : 0)
+    private final Slot[] slots = new Slot[18];
+
+    public DeflaterPool() {
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot();
+        }
+    }
+
+    public static DeflaterPool shared() {
+        return SHARED;
+    }
+
+    public Deflater borrow(int level, boolean nowrap) {
+        Slot slot = slot(level, nowrap);
+        Deflater deflater = slot.idle.poll();
+        if (deflater == null) {
+            return new Deflater(clamp(level), nowrap);
+        }
+        slot.idleCount.decrementAndGet();
+        return deflater;
+    }
+
+    public void release(Deflater deflater, int level, boolean nowrap) {
+        deflater.reset();
+        Slot slot = slot(level, nowrap);
+        if (slot.idleCount.incrementAndGet() <= MAX_IDLE_PER_KEY) {
+            slot.idle.offer(deflater);
+        } else {
+            slot.idleCount.decrementAndGet();
+            deflater.end();
+        }
+    }
+
+    private Slot slot(int level, boolean nowrap) {
+        return slots[(clamp(level) - 1) * 2 + (nowrap ? 1 : 0)];
+    }
+
+    private static int clamp(int level) {
+        return Math.min(9, Math.max(1, level));
+    }
+
+    private static final class Slot {
+        private final Queue<Deflater> idle = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger idleCount = new AtomicInteger();
+    }
+}
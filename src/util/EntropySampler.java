@@ -0,0 +1,92 @@
+package util;
+
+/**
+ * Cheap checks on a content sample to tell whether compressing it is worth the CPU.
+ */
+public final class EntropySampler {
+
+    public static final int SAMPLE_SIZE = 64 * 1024;
+
+    // above this many bits per byte deflate rarely saves more than a few percent
+    public static final double INCOMPRESSIBLE_ENTROPY = 7.5;
+
+    private static final byte[][] COMPRESSED_SIGNATURES = {
+            {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF},                           // JPEG
+            {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A},             // PNG
+            {'P', 'K', 0x03, 0x04},                                           // ZIP, DOCX, XLSX, PPTX
+            {0x1F, (byte) 0x8B},                                              // GZIP
+            {'G', 'I', 'F', '8'},                                             // GIF
+            {'7', 'z', (byte) 0xBC, (byte) 0xAF, 0x27, 0x1C},                 // 7-Zip
+    };
+
+    private EntropySampler() {
+    }
+
+    public static double shannonEntropy(byte[] sample, int offset, int length) {
+        if (length <= 0) {
+            return 0.0;
+        }
+        int[] counts = new int[256];
+        for (int i = offset; i < offset + length; i++) {
+            counts[sample[i] & 0xFF]++;
+        }
+        double entropy = 0.0;
+        for (int count : counts) {
+            if (count > 0) {
+                double p = (double) count / length;
+                entropy -= p * (Math.log(p) / Math.log(2));
+            }
+        }
+        return entropy;
+    }
+
+    public static String detectCompressedSignature(byte[] sample, int length) {
+        for (byte[] signature : COMPRESSED_SIGNATURES) {
+            if (startsWith(sample, length, signature)) {
+                return describe(signature);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns why the sample looks incompressible, or null if compression should proceed.
+     */
+    public static String incompressibleReason(byte[] sample, int length) {
+        String signature = detectCompressedSignature(sample, length);
+        if (signature != null) {
+            return "already compressed (" + signature + ")";
+        }
+        // tiny samples have low measured entropy no matter what, so only judge real samples
+        if (length >= 4096) {
+            double entropy = shannonEntropy(sample, 0, length);
+            if (entropy >= INCOMPRESSIBLE_ENTROPY) {
+                return String.format("high entropy (%.2f bits/byte)", entropy);
+            }
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] sample, int length, byte[] signature) {
+        if (length < signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if (sample[i] != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String describe(byte[] signature) {
+        switch (signature[0]) {
+            case (byte) 0xFF: return "JPEG";
+            case (byte) 0x89: return "PNG";
+            case 'P': return "ZIP";
+            case 0x1F: return "GZIP";
+            case 'G': return "GIF";
+            default: return "7Z";
+        }
+    }
+}
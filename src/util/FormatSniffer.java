@@ -0,0 +1,184 @@
+package util;
+
+import model.Format;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Identifies a document's format from its first bytes instead of its name.
+ * Signatures are indexed by their first byte, so a lookup only compares the
+ * one or two entries that can match.
+ */
+public final class FormatSniffer {
+
+    // enough for the ZIP local header of the first one or two OOXML parts
+    public static final int HEADER_SIZE = 512;
+
+    private static final byte[] CONTENT_TYPES = "[Content_Types].xml".getBytes(StandardCharsets.US_ASCII);
+    private static final Signature[][] BY_FIRST_BYTE = new Signature[256][];
+
+    static {
+        register(Format.PDF, '%', 'P', 'D', 'F', '-');
+        register(Format.PNG, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A);
+        register(Format.JPEG, 0xFF, 0xD8, 0xFF);
+        register(Format.DOC, 0xD0, 0xCF, 0x11, 0xE0, 0xA1, 0xB1, 0x1A, 0xE1); // OLE2 compound file
+        register(Format.DOCX, 'P', 'K', 0x03, 0x04);
+    }
+
+    private FormatSniffer() {
+    }
+
+    /**
+     * What the header revealed about the content.
+     */
+    public enum Kind {
+        // starts with the signature of {@link Result#getFormat()}
+        SIGNATURE,
+        // no signature, but only text characters
+        TEXT,
+        // a ZIP archive with no OOXML part in the header; large or reordered parts can hide it
+        FOREIGN_ARCHIVE,
+        // binary content without a known signature
+        UNRECOGNIZED
+    }
+
+    public static final class Result {
+        private static final Result TEXT = new Result(Kind.TEXT, null);
+        private static final Result FOREIGN_ARCHIVE = new Result(Kind.FOREIGN_ARCHIVE, null);
+        private static final Result UNRECOGNIZED = new Result(Kind.UNRECOGNIZED, null);
+
+        private final Kind kind;
+        private final Format format;
+
+        private Result(Kind kind, Format format) {
+            this.kind = kind;
+            this.format = format;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * The matched format for {@code SIGNATURE}, otherwise null.
+         */
+        public Format getFormat() {
+            return format;
+        }
+
+        @Override
+        public String toString() {
+            return kind == Kind.SIGNATURE ? format.name() : kind.name();
+        }
+    }
+
+    /**
+     * Reads at most {@link #HEADER_SIZE} bytes of the file and sniffs them.
+     */
+    public static Result sniff(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) != -1) {
+                // keep reading until the header is full or the file ends
+            }
+            return sniff(header.array(), header.position());
+        }
+    }
+
+    /**
+     * Matches the header against the known signatures, falling back to
+     * whether it looks like text.
+     */
+    public static Result sniff(byte[] header, int length) {
+        if (length > 0) {
+            Signature[] candidates = BY_FIRST_BYTE[header[0] & 0xFF];
+            if (candidates != null) {
+                for (Signature signature : candidates) {
+                    if (signature.matches(header, length)) {
+                        if (signature.result.format == Format.DOCX && !isOoxml(header, length)) {
+                            return Result.FOREIGN_ARCHIVE;
+                        }
+                        return signature.result;
+                    }
+                }
+            }
+        }
+        return looksLikeText(header, length) ? Result.TEXT : Result.UNRECOGNIZED;
+    }
+
+    /**
+     * OOXML packages store {@code [Content_Types].xml} as their first part;
+     * some writers put it second, so the rest of the header is searched too.
+     */
+    private static boolean isOoxml(byte[] header, int length) {
+        if (length >= 30) {
+            int nameLength = (header[26] & 0xFF) | (header[27] & 0xFF) << 8;
+            if (nameLength == CONTENT_TYPES.length && regionMatches(header, length, 30, CONTENT_TYPES)) {
+                return true;
+            }
+        }
+        for (int i = 0; i + CONTENT_TYPES.length <= length; i++) {
+            if (regionMatches(header, length, i, CONTENT_TYPES)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean looksLikeText(byte[] header, int length) {
+        for (int i = 0; i < length; i++) {
+            int b = header[i] & 0xFF;
+            // control characters other than tab, newline, form feed and carriage return mean binary
+            if (b < 0x20 && b != '\t' && b != '\n' && b != '\f' && b != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean regionMatches(byte[] header, int length, int offset, byte[] expected) {
+        if (offset + expected.length > length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (header[offset + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void register(Format format, int... magic) {
+        byte[] bytes = new byte[magic.length];
+        for (int i = 0; i < magic.length; i++) {
+            bytes[i] = (byte) magic[i];
+        }
+        int first = bytes[0] & 0xFF;
+        Signature[] existing = BY_FIRST_BYTE[first];
+        Signature[] updated = new Signature[existing == null ? 1 : existing.length + 1];
+        if (existing != null) {
+            System.arraycopy(existing, 0, updated, 0, existing.length);
+        }
+        updated[updated.length - 1] = new Signature(format, bytes);
+        BY_FIRST_BYTE[first] = updated;
+    }
+
+    private static final class Signature {
+        private final Result result;
+        private final byte[] magic;
+
+        Signature(Format format, byte[] magic) {
+            this.result = new Result(Kind.SIGNATURE, format);
+            this.magic = magic;
+        }
+
+        boolean matches(byte[] header, int length) {
+            return regionMatches(header, length, 0, magic);
+        }
+    }
+}
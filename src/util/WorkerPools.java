@@ -0,0 +1,40 @@
+package util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Factory methods for the worker pools used by parallel conversions
+ */
+public final class WorkerPools {
+
+    private WorkerPools() {
+    }
+
+    public static int defaultParallelism() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    public static ExecutorService newPlatformPool(int size, String namePrefix) {
+        return Executors.newFixedThreadPool(Math.max(1, size), daemonThreadFactory(namePrefix));
+    }
+
+    public static ExecutorService newVirtualPool(String namePrefix) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(namePrefix + "-", 1).factory());
+    }
+
+    public static ExecutorService newPool(int size, boolean virtualThreads, String namePrefix) {
+        return virtualThreads ? newVirtualPool(namePrefix) : newPlatformPool(size, namePrefix);
+    }
+
+    public static ThreadFactory daemonThreadFactory(String namePrefix) {
+        AtomicInteger counter = new AtomicInteger(1);
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + "-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,88 @@
+package decorator;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AesGcmCodecTest {
+
+    private static final int CHUNK_SIZE = 1024;
+    // length prefix + sealed chunk
+    private static final int FRAME_LENGTH = 4 + CHUNK_SIZE + AesGcmCodec.TAG_LENGTH;
+
+    private static final AesGcmCodec CODEC = AesGcmCodec.forPassphrase("correct horse battery staple");
+
+    @Test
+    void streamModeRoundTrips() throws IOException {
+        byte[] plain = randomBytes(10_000);
+        assertArrayEquals(plain, CODEC.decrypt(encrypt(plain, EncryptionMode.STREAM, null)));
+    }
+
+    @Test
+    void chunkedModeRoundTrips() throws IOException {
+        // a partial last chunk, and an exact multiple of the chunk size
+        for (int size : new int[] {0, 1, 5_000, 4 * CHUNK_SIZE}) {
+            byte[] plain = randomBytes(size);
+            assertArrayEquals(plain, CODEC.decrypt(encrypt(plain, EncryptionMode.CHUNKED, null)));
+            assertArrayEquals(plain, CODEC.decrypt(encrypt(plain, EncryptionMode.CHUNKED, ForkJoinPool.commonPool())));
+        }
+    }
+
+    @Test
+    void codecWithAnotherSaltDecrypts() throws IOException {
+        byte[] plain = randomBytes(3_000);
+        byte[] encrypted = encrypt(plain, EncryptionMode.CHUNKED, null);
+        assertArrayEquals(plain, new AesGcmCodec("correct horse battery staple").decrypt(encrypted));
+    }
+
+    @Test
+    void wrongPassphraseIsRejected() throws IOException {
+        byte[] encrypted = encrypt(randomBytes(3_000), EncryptionMode.STREAM, null);
+        assertThrows(IOException.class, () -> AesGcmCodec.forPassphrase("wrong").decrypt(encrypted));
+    }
+
+    @Test
+    void truncatedStreamIsRejected() throws IOException {
+        byte[] encrypted = encrypt(randomBytes(3_000), EncryptionMode.STREAM, null);
+        assertThrows(IOException.class, () -> CODEC.decrypt(Arrays.copyOf(encrypted, encrypted.length - 1)));
+    }
+
+    @Test
+    void droppedLastChunkIsRejected() throws IOException {
+        byte[] encrypted = encrypt(randomBytes(4 * CHUNK_SIZE), EncryptionMode.CHUNKED, null);
+        byte[] truncated = Arrays.copyOf(encrypted, encrypted.length - FRAME_LENGTH);
+        assertThrows(IOException.class, () -> CODEC.decrypt(truncated));
+    }
+
+    @Test
+    void reorderedChunksAreRejected() throws IOException {
+        byte[] encrypted = encrypt(randomBytes(4 * CHUNK_SIZE), EncryptionMode.CHUNKED, null);
+        byte[] reordered = encrypted.clone();
+        int first = AesGcmCodec.HEADER_LENGTH;
+        int second = first + FRAME_LENGTH;
+        System.arraycopy(encrypted, second, reordered, first, FRAME_LENGTH);
+        System.arraycopy(encrypted, first, reordered, second, FRAME_LENGTH);
+        assertThrows(IOException.class, () -> CODEC.decrypt(reordered));
+    }
+
+    private static byte[] encrypt(byte[] plain, EncryptionMode mode, ForkJoinPool pool) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (StreamStage stage = CODEC.encryptingStage(out, mode, CHUNK_SIZE, pool)) {
+            stage.write(plain);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+}
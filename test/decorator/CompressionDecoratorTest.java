@@ -0,0 +1,60 @@
+package decorator;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CompressionDecoratorTest {
+
+    private static final String[] WORDS = {"document", "convert", "pipeline", "strategy", "adapter", "facade"};
+
+    @Test
+    void parallelGzipInflatesWithTheJdk() throws IOException {
+        for (int size : new int[] {0, 100, 128 * 1024, 1_000_000}) {
+            byte[] plain = text(size);
+            byte[] compressed = compressInParallel(plain, CompressionFormat.GZIP);
+            assertArrayEquals(plain, new GZIPInputStream(new ByteArrayInputStream(compressed)).readAllBytes());
+        }
+    }
+
+    @Test
+    void parallelZlibInflatesWithTheJdk() throws IOException {
+        for (int size : new int[] {0, 100, 128 * 1024, 1_000_000}) {
+            byte[] plain = text(size);
+            byte[] compressed = compressInParallel(plain, CompressionFormat.DEFLATE);
+            assertArrayEquals(plain, new InflaterInputStream(new ByteArrayInputStream(compressed)).readAllBytes());
+        }
+    }
+
+    private static byte[] compressInParallel(byte[] plain, CompressionFormat format) throws IOException {
+        CompressionDecorator decorator = new CompressionDecorator(new BaseDocumentProcessor(), 6, format);
+        decorator.setSkipIncompressible(false);
+        decorator.setForkJoinPool(ForkJoinPool.commonPool());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = new ByteArrayInputStream(plain)) {
+            assertNull(decorator.compress(in, out));
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] text(int size) {
+        Random random = new Random(size);
+        StringBuilder text = new StringBuilder(size + 16);
+        while (text.length() < size) {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(random.nextInt(1000)).append(' ');
+        }
+        text.setLength(size);
+        return text.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,69 @@
+package journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class JobJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replayDropsTornLastLine() throws IOException {
+        Path file = directory.resolve("batch.journal");
+        try (JobJournal journal = new JobJournal(file, false)) {
+            journal.queued("a.pdf");
+            journal.saved("a.pdf", "out/a.docx");
+            journal.failed("b.pdf", "bad\tinput");
+            journal.flush();
+        }
+        long intactLength = Files.size(file);
+
+        // a crash half-way through writing the next record
+        Files.writeString(file, "SAVED\tb.pdf\tout/b.do", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        try (JobJournal journal = new JobJournal(file, false)) {
+            assertEquals(JobJournal.State.SAVED, journal.getState("a.pdf"));
+            assertEquals("out/a.docx", journal.getDetail("a.pdf"));
+            assertEquals(JobJournal.State.FAILED, journal.getState("b.pdf"));
+            assertEquals("bad\tinput", journal.getDetail("b.pdf"));
+            assertEquals(intactLength, Files.size(file));
+
+            journal.saved("b.pdf", "out/b.docx");
+            journal.flush();
+        }
+
+        // records appended after the cut replay normally
+        try (JobJournal journal = new JobJournal(file, false)) {
+            assertEquals(JobJournal.State.SAVED, journal.getState("b.pdf"));
+            assertEquals("out/b.docx", journal.getDetail("b.pdf"));
+            assertNull(journal.getState("c.pdf"));
+        }
+    }
+
+    @Test
+    void replayStopsAtCorruptedLine() throws IOException {
+        Path file = directory.resolve("batch.journal");
+        try (JobJournal journal = new JobJournal(file, false)) {
+            journal.saved("a.pdf", "out/a.docx");
+            journal.flush();
+        }
+        // a complete line whose checksum does not match
+        Files.writeString(file, "SAVED\tb.pdf\tout/b.docx\t0\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        try (JobJournal journal = new JobJournal(file, false)) {
+            assertEquals(JobJournal.State.SAVED, journal.getState("a.pdf"));
+            assertNull(journal.getState("b.pdf"));
+            assertEquals(1, journal.size());
+        }
+    }
+}